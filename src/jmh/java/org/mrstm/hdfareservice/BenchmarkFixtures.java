@@ -0,0 +1,76 @@
+package org.mrstm.hdfareservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mrstm.uberentityservice.dto.fare.EstimateFareRequestDto;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.CarType;
+import org.mrstm.uberentityservice.models.ExactLocation;
+import org.mrstm.uberentityservice.models.FareRate;
+
+import java.util.Map;
+
+/**
+ * Shared inputs for the benchmarks. Entity-module types are built through Jackson so the
+ * fixtures only depend on their JSON shape.
+ */
+public final class BenchmarkFixtures {
+    public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static final String DISTANCE_MATRIX_JSON = """
+            {
+              "destination_addresses": ["Connaught Place, New Delhi, Delhi 110001, India"],
+              "origin_addresses": ["Indira Gandhi International Airport, New Delhi, Delhi 110037, India"],
+              "rows": [{
+                "elements": [{
+                  "distance": {"text": "16.4 km", "value": 16412},
+                  "duration": {"text": "31 mins", "value": 1862},
+                  "duration_in_traffic": {"text": "44 mins", "value": 2640},
+                  "status": "OK"
+                }]
+              }],
+              "status": "OK"
+            }
+            """;
+
+    private BenchmarkFixtures() {
+    }
+
+    public static CarType carType() {
+        return CarType.values()[0];
+    }
+
+    // with an id, as a persisted rate has, since quote tokens reference it
+    public static FareRate fareRate() {
+        return OBJECT_MAPPER.convertValue(Map.of(
+                "id", 1L,
+                "baseFare", 50.0,
+                "perKmRate", 12.0,
+                "perMinRate", 1.5,
+                "minFare", 80.0,
+                "carType", carType().name(),
+                "active", true
+        ), FareRate.class);
+    }
+
+    public static ExactLocation location(double latitude, double longitude) {
+        return OBJECT_MAPPER.convertValue(Map.of("latitude", latitude, "longitude", longitude), ExactLocation.class);
+    }
+
+    public static DistanceDuration distanceDuration() {
+        return DistanceDuration.builder()
+                .startAddress("Indira Gandhi International Airport")
+                .endAddress("Connaught Place")
+                .distance(16.4)
+                .duration(31.0)
+                .durationInTraffic(44.0)
+                .build();
+    }
+
+    public static EstimateFareRequestDto estimateRequest() {
+        return OBJECT_MAPPER.convertValue(Map.of(
+                "startLocation", Map.of("latitude", 28.5562, "longitude", 77.1000),
+                "endLocation", Map.of("latitude", 28.6315, "longitude", 77.2167),
+                "carType", carType().name()
+        ), EstimateFareRequestDto.class);
+    }
+}
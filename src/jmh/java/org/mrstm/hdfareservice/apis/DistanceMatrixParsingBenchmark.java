@@ -0,0 +1,30 @@
+package org.mrstm.hdfareservice.apis;
+
+import org.mrstm.hdfareservice.BenchmarkFixtures;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mirrors what RestTemplate does with a Distance Matrix response: Jackson binds the body to
+ * DistanceMatrixResponse, then GoogleMapsServiceImpl extracts the matrix.
+ */
+@State(Scope.Benchmark)
+public class DistanceMatrixParsingBenchmark {
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        body = BenchmarkFixtures.DISTANCE_MATRIX_JSON.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public DistanceDuration[][] parse() throws Exception {
+        DistanceMatrixResponse response = BenchmarkFixtures.OBJECT_MAPPER.readValue(body, DistanceMatrixResponse.class);
+        return GoogleMapsServiceImpl.parseDistanceMatrix(response, 1, 1);
+    }
+}
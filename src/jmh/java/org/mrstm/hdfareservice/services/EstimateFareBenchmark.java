@@ -0,0 +1,72 @@
+package org.mrstm.hdfareservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mrstm.hdfareservice.BenchmarkFixtures;
+import org.mrstm.hdfareservice.apis.RouteLookup;
+import org.mrstm.hdfareservice.dto.QuotedFareDto;
+import org.mrstm.hdfareservice.repositories.FareRateRepository;
+import org.mrstm.hdfareservice.strategies.FareStrategyBenchmark;
+import org.mrstm.hdfareservice.strategies.FareStrategyImpl;
+import org.mrstm.uberentityservice.dto.fare.EstimateFareRequestDto;
+import org.mrstm.uberentityservice.models.CarType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Estimate pricing once the route is known: the active rate from the in-memory registry, then
+ * the same {@link RoutePricer} FareServiceImpl uses (surge, fare formula and, for provider
+ * routes, the signed quote token). The maps call is left out, since its cost is the provider's.
+ */
+@State(Scope.Benchmark)
+public class EstimateFareBenchmark {
+    private static final long RIDER_ID = 42;
+
+    private FareRateRegistry fareRateRegistry;
+    private RoutePricer routePricer;
+    private EstimateFareRequestDto request;
+    private RouteLookup approximateRoute;
+    private RouteLookup providerRoute;
+    private CarType carType;
+
+    @Setup
+    public void setUp() throws Exception {
+        FareRateRepository rates = (FareRateRepository) Proxy.newProxyInstance(
+                FareRateRepository.class.getClassLoader(),
+                new Class<?>[]{FareRateRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findAllByActiveIsTrue")) {
+                        return List.of(BenchmarkFixtures.fareRate());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        fareRateRegistry = new FareRateRegistry(rates, null, "unused");
+        fareRateRegistry.refresh();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        routePricer = new RoutePricer(
+                new FareStrategyImpl(FareStrategyBenchmark.pricingPipeline()),
+                SurgeBenchmark.surgeEngine("demand"),
+                new FareQuoteService(meterRegistry, null, "benchmark-secret", false, Duration.ofHours(4), 250),
+                new FareMetrics(meterRegistry));
+        request = BenchmarkFixtures.estimateRequest();
+        approximateRoute = RouteLookup.approximate(BenchmarkFixtures.distanceDuration());
+        providerRoute = RouteLookup.provider(BenchmarkFixtures.distanceDuration());
+        carType = CarType.valueOf(request.getCarType());
+    }
+
+    @Benchmark
+    public QuotedFareDto priceApproximateRoute() {
+        return routePricer.priceEstimate(request, RIDER_ID, approximateRoute, fareRateRegistry.getActiveRate(carType), 10);
+    }
+
+    @Benchmark
+    public QuotedFareDto priceAndQuoteProviderRoute() {
+        return routePricer.priceEstimate(request, RIDER_ID, providerRoute, fareRateRegistry.getActiveRate(carType), 10);
+    }
+}
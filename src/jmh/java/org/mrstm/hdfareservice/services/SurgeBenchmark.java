@@ -0,0 +1,60 @@
+package org.mrstm.hdfareservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mrstm.hdfareservice.BenchmarkFixtures;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Duration;
+
+@State(Scope.Benchmark)
+public class SurgeBenchmark {
+    @Param({"1.0", "1.35", "2.4"})
+    private double trafficRatio;
+
+    private DistanceDuration distanceDuration;
+    private SurgeEngine surgeEngine;
+    private SurgeEngine trafficSurgeEngine;
+    private ExactLocation pickup;
+
+    @Setup
+    public void setUp() {
+        distanceDuration = DistanceDuration.builder()
+                .distance(16.4)
+                .duration(30.0)
+                .durationInTraffic(30.0 * trafficRatio)
+                .build();
+
+        pickup = BenchmarkFixtures.location(28.5562, 77.1000);
+        surgeEngine = surgeEngine("demand");
+        for (int i = 0; i < 200; i++) {
+            surgeEngine.recordDemand(pickup);
+        }
+        surgeEngine.recompute();
+        trafficSurgeEngine = surgeEngine("traffic");
+    }
+
+    static SurgeEngine surgeEngine(String mode) {
+        return new SurgeEngine(new SimpleMeterRegistry(), mode, 5, Duration.ofMinutes(5), 30, 3.0, 0.5, 2.5, 20, 0.3, false, 60);
+    }
+
+    @Benchmark
+    public double trafficSurge() {
+        return trafficSurgeEngine.surgeFor(pickup, distanceDuration);
+    }
+
+    @Benchmark
+    public double demandSurgeLookup() {
+        return surgeEngine.getMultiplier(pickup);
+    }
+
+    @Benchmark
+    public void recordDemand() {
+        surgeEngine.recordDemand(pickup);
+    }
+}
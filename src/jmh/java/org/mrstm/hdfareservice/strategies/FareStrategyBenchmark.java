@@ -0,0 +1,41 @@
+package org.mrstm.hdfareservice.strategies;
+
+import org.mrstm.hdfareservice.BenchmarkFixtures;
+import org.mrstm.uberentityservice.models.FareRate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class FareStrategyBenchmark {
+    private FareStrategy fareStrategy;
+    private PricingProgram program;
+    private FareRate fareRate;
+    private double distance;
+    private double duration;
+
+    @Setup
+    public void setUp() {
+        PricingPipeline pricingPipeline = pricingPipeline();
+        fareStrategy = new FareStrategyImpl(pricingPipeline);
+        fareRate = BenchmarkFixtures.fareRate();
+        program = pricingPipeline.programFor(fareRate);
+        distance = 16.4;
+        duration = 44;
+    }
+
+    @Benchmark
+    public double calculate() {
+        return fareStrategy.calculate(fareRate, distance, duration, 1.3, 10);
+    }
+
+    @Benchmark
+    public double evaluateCompiled() {
+        return program.evaluate(distance, duration, 1.3, 10, 9);
+    }
+
+    public static PricingPipeline pricingPipeline() {
+        return new PricingPipeline("base,per-km,per-min,time-of-day,surge,min-fare,discount,rounding", "8-10:1.1,17-20:1.15", 1, 50);
+    }
+}
@@ -0,0 +1,315 @@
+package org.mrstm.hdfareservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.mrstm.hdfareservice.HdFareServiceApplication;
+import org.mrstm.hdfareservice.dto.BookingCompletedEvent;
+import org.mrstm.hdfareservice.dto.SettlementResult;
+import org.mrstm.hdfareservice.repositories.FareRateRepository;
+import org.mrstm.hdfareservice.services.FareRateRegistry;
+import org.mrstm.hdfareservice.services.FareService;
+import org.mrstm.uberentityservice.models.Booking;
+import org.mrstm.uberentityservice.models.CarType;
+import org.mrstm.uberentityservice.models.FareRate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts the service in-process on the H2 {@code loadtest} profile with maps calls served by
+ * {@link StubDistanceMatrixServer}, seeds rates and completed bookings, then replays
+ * {@link RecordedTraffic}: estimates over HTTP, settlements through the same
+ * {@link FareService#settleCompletedBookings} batch call the Kafka consumer makes. After a
+ * warmup phase it reports throughput and latency percentiles per request type.
+ * <p>
+ * With {@code loadtest.rate > 0} requests are issued on a fixed schedule and latency is
+ * measured from the scheduled start, so a stalled service is not hidden by fewer requests
+ * (coordinated omission); with 0 every worker sends back to back.
+ * <p>
+ * The database is an in-memory H2 in MySQL mode, not hand-written in-memory repositories:
+ * settlement's cost is mostly its SQL (the ON DUPLICATE KEY insert, the snapshot re-read of
+ * settled booking ids and the rollup upsert), and HashMap-backed fakes would skip exactly that.
+ * Like the stub maps server it lives in this JVM, so no container or external database is needed.
+ */
+public final class LoadDriver {
+    private static final Logger log = LoggerFactory.getLogger(LoadDriver.class);
+
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        ObjectMapper objectMapper = new ObjectMapper();
+        RecordedTraffic traffic = RecordedTraffic.read(settings.traffic(), objectMapper);
+
+        try (StubDistanceMatrixServer stub = new StubDistanceMatrixServer(0,
+                StubDistanceMatrixServer.LatencyDistribution.parse(settings.mapsLatency()),
+                settings.mapsErrorRate(), settings.mapsHttpErrorRate()).start();
+             ConfigurableApplicationContext app = new SpringApplicationBuilder(HdFareServiceApplication.class)
+                     .profiles("loadtest")
+                     .properties("server.port=0", "google.maps.base-url=" + stub.baseUrl())
+                     .run(args);
+             ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder().executor(workers).build()) {
+
+            seedRates(app);
+            List<Long> bookingIds = seedBookings(app, objectMapper, traffic.ofType(RecordedTraffic.Type.SETTLEMENT), settings.bookings());
+            int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            Workload workload = new Workload(traffic, bookingIds, objectMapper, http,
+                    URI.create("http://127.0.0.1:" + port + "/fare/estimate"), app.getBean(FareService.class), settings.settlementBatch());
+
+            log.info("Warming up for {}", settings.warmup());
+            workload.run(workers, settings.concurrency(), settings.rate(), settings.warmup());
+            log.info("Measuring for {} with {} workers{}", settings.duration(), settings.concurrency(),
+                    settings.rate() > 0 ? " at " + settings.rate() + " req/s" : "");
+            Map<RecordedTraffic.Type, Stats> results = workload.run(workers, settings.concurrency(), settings.rate(), settings.duration());
+            report(results, settings, stub.requests(), objectMapper);
+        }
+    }
+
+    private static void seedRates(ConfigurableApplicationContext app) {
+        List<FareRate> rates = new ArrayList<>();
+        for (CarType carType : CarType.values()) {
+            rates.add(FareRate.builder()
+                    .baseFare(50.0)
+                    .perKmRate(12.0)
+                    .perMinRate(1.5)
+                    .minFare(80.0)
+                    .carType(carType)
+                    .active(true)
+                    .build());
+        }
+        app.getBean(FareRateRepository.class).saveAll(rates);
+        app.getBean(FareRateRegistry.class).refresh();
+    }
+
+    /**
+     * Persists completed bookings shaped after the recorded settlement templates. Entity-module
+     * types are built through their JSON shape; if that shape does not persist, settlement
+     * traffic is left out of the run rather than failing it.
+     */
+    private static List<Long> seedBookings(ConfigurableApplicationContext app, ObjectMapper objectMapper,
+                                           List<RecordedTraffic.Request> templates, int count) {
+        if (templates.isEmpty() || count <= 0) {
+            return List.of();
+        }
+        EntityManager entityManager = app.getBean(EntityManager.class);
+        TransactionTemplate transactionTemplate = app.getBean(TransactionTemplate.class);
+        List<Long> ids = new ArrayList<>(count);
+        try {
+            for (int from = 0; from < count; from += 500) {
+                int chunkStart = from;
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = chunkStart; i < Math.min(count, chunkStart + 500); i++) {
+                        JsonNode template = templates.get(i % templates.size()).payload();
+                        Booking booking = objectMapper.convertValue(Map.of(
+                                "bookingStatus", "COMPLETED",
+                                "carType", template.path("carType").asText(),
+                                "startLocation", template.path("startLocation"),
+                                "endLocation", template.path("endLocation")), Booking.class);
+                        entityManager.persist(booking.getStartLocation());
+                        entityManager.persist(booking.getEndLocation());
+                        entityManager.persist(booking);
+                        ids.add(booking.getId());
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not seed bookings, settlement traffic is skipped: {}", e.getMessage());
+            return List.of();
+        }
+        log.info("Seeded {} completed bookings", ids.size());
+        return ids;
+    }
+
+    private static void report(Map<RecordedTraffic.Type, Stats> results, Settings settings, long mapsRequests,
+                               ObjectMapper objectMapper) throws Exception {
+        double seconds = settings.duration().toNanos() / 1e9;
+        Map<String, Object> json = new LinkedHashMap<>();
+        // toString rather than the record itself: a plain ObjectMapper cannot write java.time.Duration
+        json.put("settings", settings.toString());
+        System.out.printf("%n%-11s %9s %7s %10s %9s %9s %9s %9s %9s%n",
+                "type", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        results.forEach((type, stats) -> {
+            Histogram histogram = stats.latencyMicros();
+            long requests = histogram.getTotalCount();
+            System.out.printf("%-11s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    type.name().toLowerCase(), requests, stats.errors().get(), requests / seconds,
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0);
+            json.put(type.name().toLowerCase(), Map.of(
+                    "requests", requests,
+                    "errors", stats.errors().get(),
+                    "throughput", requests / seconds,
+                    "p50Ms", millis(histogram, 50),
+                    "p90Ms", millis(histogram, 90),
+                    "p99Ms", millis(histogram, 99),
+                    "p999Ms", millis(histogram, 99.9),
+                    "maxMs", histogram.getMaxValue() / 1000.0));
+        });
+        System.out.printf("stub maps requests: %d%n", mapsRequests);
+        json.put("mapsRequests", mapsRequests);
+
+        Path reportPath = Path.of(settings.report());
+        Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportPath.toFile(), json);
+        System.out.printf("report written to %s%n", reportPath);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    record Stats(Histogram latencyMicros, AtomicLong errors) {
+        static Stats create() {
+            return new Stats(new ConcurrentHistogram(3), new AtomicLong());
+        }
+    }
+
+    /**
+     * Replays the recorded requests round-robin. Settlement requests each take the next
+     * {@code settlementBatch} seeded bookings; once all are used they come around again and
+     * exercise the duplicate path.
+     */
+    static final class Workload {
+        private final List<RecordedTraffic.Request> requests;
+        private final List<byte[]> estimateBodies;
+        private final List<Long> bookingIds;
+        private final HttpClient http;
+        private final URI estimateUri;
+        private final FareService fareService;
+        private final int settlementBatch;
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicLong bookingCursor = new AtomicLong();
+
+        Workload(RecordedTraffic traffic, List<Long> bookingIds, ObjectMapper objectMapper, HttpClient http,
+                 URI estimateUri, FareService fareService, int settlementBatch) throws Exception {
+            this.requests = bookingIds.isEmpty() ? traffic.ofType(RecordedTraffic.Type.ESTIMATE) : traffic.requests();
+            if (requests.isEmpty()) {
+                throw new IllegalStateException("Nothing to replay: no estimate traffic and no seeded bookings");
+            }
+            this.estimateBodies = new ArrayList<>(requests.size());
+            for (RecordedTraffic.Request request : requests) {
+                estimateBodies.add(request.type() == RecordedTraffic.Type.ESTIMATE ? objectMapper.writeValueAsBytes(request.payload()) : null);
+            }
+            this.bookingIds = bookingIds;
+            this.http = http;
+            this.estimateUri = estimateUri;
+            this.fareService = fareService;
+            this.settlementBatch = Math.max(1, settlementBatch);
+        }
+
+        Map<RecordedTraffic.Type, Stats> run(ExecutorService workers, int concurrency, double rate, Duration duration) throws Exception {
+            Map<RecordedTraffic.Type, Stats> stats = new EnumMap<>(RecordedTraffic.Type.class);
+            for (RecordedTraffic.Type type : RecordedTraffic.Type.values()) {
+                stats.put(type, Stats.create());
+            }
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            AtomicLong scheduled = new AtomicLong();
+            List<Future<?>> running = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                running.add(workers.submit(() -> {
+                    while (true) {
+                        long intendedStart;
+                        if (rate > 0) {
+                            intendedStart = start + (long) (scheduled.getAndIncrement() * 1e9 / rate);
+                            long wait = intendedStart - System.nanoTime();
+                            if (wait > 0) {
+                                LockSupport.parkNanos(wait);
+                            }
+                        } else {
+                            intendedStart = System.nanoTime();
+                        }
+                        if (intendedStart >= end) {
+                            return;
+                        }
+                        int index = (int) (sequence.getAndIncrement() % requests.size());
+                        RecordedTraffic.Type type = requests.get(index).type();
+                        boolean ok = execute(index, type);
+                        Stats typeStats = stats.get(type);
+                        typeStats.latencyMicros().recordValue(Math.max(0, (System.nanoTime() - intendedStart) / 1000));
+                        if (!ok) {
+                            typeStats.errors().incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+            return stats;
+        }
+
+        private boolean execute(int index, RecordedTraffic.Type type) {
+            try {
+                if (type == RecordedTraffic.Type.ESTIMATE) {
+                    HttpResponse<Void> response = http.send(HttpRequest.newBuilder(estimateUri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(estimateBodies.get(index)))
+                            .build(), HttpResponse.BodyHandlers.discarding());
+                    return response.statusCode() / 100 == 2;
+                }
+                Map<Long, BookingCompletedEvent> batch = new HashMap<>();
+                long first = bookingCursor.getAndAdd(settlementBatch);
+                for (int i = 0; i < settlementBatch; i++) {
+                    long bookingId = bookingIds.get((int) ((first + i) % bookingIds.size()));
+                    batch.put(bookingId, BookingCompletedEvent.builder().bookingId(bookingId).build());
+                }
+                SettlementResult result = fareService.settleCompletedBookings(batch);
+                return result.getFailures().isEmpty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+
+    record Settings(String traffic, Duration warmup, Duration duration, int concurrency, double rate,
+                    int bookings, int settlementBatch, String mapsLatency, double mapsErrorRate,
+                    double mapsHttpErrorRate, String report) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    System.getProperty("loadtest.traffic", "classpath:traffic/sample.ndjson"),
+                    DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "15s")),
+                    DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "60s")),
+                    Integer.parseInt(System.getProperty("loadtest.concurrency", "64")),
+                    Double.parseDouble(System.getProperty("loadtest.rate", "0")),
+                    Integer.parseInt(System.getProperty("loadtest.bookings", "20000")),
+                    Integer.parseInt(System.getProperty("loadtest.settlement-batch", "50")),
+                    System.getProperty("loadtest.maps.latency", "lognormal:80ms:400ms"),
+                    Double.parseDouble(System.getProperty("loadtest.maps.error-rate", "0")),
+                    Double.parseDouble(System.getProperty("loadtest.maps.http-error-rate", "0")),
+                    System.getProperty("loadtest.report", "build/loadtest/results.json"));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.mrstm.hdfareservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.mrstm.uberentityservice.models.CarType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Traffic to replay, one JSON object per line:
+ * <pre>
+ * {"type":"estimate","body":{...EstimateFareRequestDto...}}
+ * {"type":"settlement","carType":"...","startLocation":{...},"endLocation":{...}}
+ * </pre>
+ * Lines are replayed round-robin, so their mix in the file is the mix of the load. Settlement
+ * lines are templates for the completed bookings seeded before the run. Lines without a
+ * carType cycle through {@link CarType#values()}.
+ */
+public record RecordedTraffic(List<Request> requests) {
+
+    public enum Type {
+        ESTIMATE,
+        SETTLEMENT
+    }
+
+    /**
+     * @param payload the estimate request body, or the booking template for a settlement
+     */
+    public record Request(Type type, JsonNode payload) {
+    }
+
+    public static RecordedTraffic read(String location, ObjectMapper objectMapper) throws IOException {
+        try (InputStream in = location.startsWith("classpath:")
+                ? RecordedTraffic.class.getClassLoader().getResourceAsStream(location.substring("classpath:".length()))
+                : Files.newInputStream(Path.of(location))) {
+            if (in == null) {
+                throw new IOException("Traffic file not found: " + location);
+            }
+            List<Request> requests = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode node = objectMapper.readTree(line);
+                Type type = Type.valueOf(node.path("type").asText().toUpperCase());
+                JsonNode payload = type == Type.ESTIMATE ? node.path("body") : node;
+                if (!payload.hasNonNull("carType") && payload instanceof ObjectNode object) {
+                    object.put("carType", CarType.values()[requests.size() % CarType.values().length].name());
+                }
+                requests.add(new Request(type, payload));
+            }
+            if (requests.isEmpty()) {
+                throw new IOException("Traffic file is empty: " + location);
+            }
+            return new RecordedTraffic(List.copyOf(requests));
+        }
+    }
+
+    public List<Request> ofType(Type type) {
+        return requests.stream().filter(request -> request.type() == type).toList();
+    }
+}
@@ -0,0 +1,173 @@
+package org.mrstm.hdfareservice.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.mrstm.hdfareservice.apis.HaversineDistanceService;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Distance Matrix API, answering {@code /maps/api/distancematrix/json}
+ * in Google's response shape. Routes are derived from the great-circle distance, so the same
+ * pair always gets the same answer; latency and failures are drawn per request from the
+ * configured distribution and rates.
+ */
+public class StubDistanceMatrixServer implements AutoCloseable {
+    private static final double CIRCUITY = 1.35;
+    private static final double SPEED_KMPH = 32;
+    private static final double TRAFFIC_FACTOR = 1.3;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double httpErrorRate;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param errorRate     share of requests answered with status OVER_QUERY_LIMIT
+     * @param httpErrorRate share of requests answered with HTTP 503
+     */
+    public StubDistanceMatrixServer(int port, LatencyDistribution latency, double errorRate, double httpErrorRate) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.httpErrorRate = httpErrorRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext("/maps/api/distancematrix/json", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    public StubDistanceMatrixServer start() {
+        server.start();
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            Thread.sleep(latency.sampleMillis());
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < httpErrorRate) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String body = random.nextDouble() < errorRate
+                    ? "{\"status\":\"OVER_QUERY_LIMIT\",\"error_message\":\"Stubbed quota error\",\"rows\":[]}"
+                    : respond(queryOf(exchange));
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String respond(Map<String, String> query) {
+        String[] origins = query.getOrDefault("origins", "").split("\\|");
+        String[] destinations = query.getOrDefault("destinations", "").split("\\|");
+        StringBuilder json = new StringBuilder(128 + origins.length * destinations.length * 160);
+        json.append("{\"status\":\"OK\",\"origin_addresses\":[");
+        appendAddresses(json, origins);
+        json.append("],\"destination_addresses\":[");
+        appendAddresses(json, destinations);
+        json.append("],\"rows\":[");
+        for (int i = 0; i < origins.length; i++) {
+            double[] origin = parse(origins[i]);
+            json.append(i == 0 ? "" : ",").append("{\"elements\":[");
+            for (int j = 0; j < destinations.length; j++) {
+                double[] destination = parse(destinations[j]);
+                double km = HaversineDistanceService.greatCircleKm(origin[0], origin[1], destination[0], destination[1]) * CIRCUITY;
+                long meters = Math.round(km * 1000);
+                long seconds = Math.round(km / SPEED_KMPH * 3600);
+                json.append(j == 0 ? "" : ",")
+                        .append("{\"status\":\"OK\",\"distance\":{\"value\":").append(meters)
+                        .append("},\"duration\":{\"value\":").append(seconds)
+                        .append("},\"duration_in_traffic\":{\"value\":").append(Math.round(seconds * TRAFFIC_FACTOR))
+                        .append("}}");
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void appendAddresses(StringBuilder json, String[] locations) {
+        for (int i = 0; i < locations.length; i++) {
+            json.append(i == 0 ? "" : ",").append("\"Stub address ").append(locations[i]).append('"');
+        }
+    }
+
+    private static double[] parse(String location) {
+        String[] parts = location.split(",");
+        return new double[]{Double.parseDouble(parts[0]), Double.parseDouble(parts[1])};
+    }
+
+    private static Map<String, String> queryOf(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Provider latency per request, parsed from {@code fixed:50ms}, {@code uniform:20ms:120ms}
+     * or {@code lognormal:<median>:<p99>}.
+     */
+    public interface LatencyDistribution {
+        long sampleMillis();
+
+        static LatencyDistribution parse(String spec) {
+            String[] parts = spec.split(":");
+            long first = DurationStyle.detectAndParse(parts[1]).toMillis();
+            return switch (parts[0]) {
+                case "fixed" -> () -> first;
+                case "uniform" -> {
+                    long upper = DurationStyle.detectAndParse(parts[2]).toMillis();
+                    yield () -> ThreadLocalRandom.current().nextLong(first, upper + 1);
+                }
+                case "lognormal" -> {
+                    // sigma chosen so that exp(sigma * z_0.99) puts the 99th percentile at the given value
+                    double sigma = Math.log((double) DurationStyle.detectAndParse(parts[2]).toMillis() / first) / 2.326;
+                    yield () -> Math.round(first * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+                }
+                default -> throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            };
+        }
+    }
+}
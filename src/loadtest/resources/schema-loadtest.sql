@@ -0,0 +1,4 @@
+CREATE UNIQUE INDEX IF NOT EXISTS uk_fare_booking_id ON fare (booking_id);
+CREATE INDEX IF NOT EXISTS idx_fare_created_at_id ON fare (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_fare_archive_created_at_id ON fare_archive (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_fare_archive_driver_created_at ON fare_archive (driver_id, created_at, id);
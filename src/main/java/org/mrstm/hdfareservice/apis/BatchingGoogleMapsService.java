@@ -0,0 +1,222 @@
+package org.mrstm.hdfareservice.apis;
+
+import org.mrstm.hdfareservice.exceptions.BadRequestException;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent lookups into multi-element Distance Matrix requests. Pairs are
+ * collected for up to {@code window} (or until {@code maxPairs} are queued) and then packed
+ * into requests that share an origin or a destination, within the API limits of 25 origins,
+ * 25 destinations and 100 elements. With single-flight enabled, callers asking for an
+ * identical pair that is already queued or in flight share the same result instead of
+ * enqueueing a duplicate. A pair that has no answer after {@code timeout} fails, so callers
+ * never wait on a lost request.
+ */
+public class BatchingGoogleMapsService implements GoogleMapsService, AutoCloseable {
+    private static final int MAX_ORIGINS = 25;
+    private static final int MAX_DESTINATIONS = 25;
+    private static final int MAX_ELEMENTS = 100;
+
+    private final GoogleMapsServiceImpl delegate;
+    private final int maxPairs;
+    private final boolean singleFlight;
+    private final Queue<PendingPair> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Map<String, CompletableFuture<DistanceDuration>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "maps-batch-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long windowNanos;
+    private final long timeoutNanos;
+
+    public BatchingGoogleMapsService(GoogleMapsServiceImpl delegate, Duration window, int maxPairs, boolean singleFlight, Duration timeout) {
+        this.delegate = delegate;
+        this.windowNanos = window.toNanos();
+        this.timeoutNanos = timeout.toNanos();
+        this.maxPairs = Math.max(1, maxPairs);
+        this.singleFlight = singleFlight;
+    }
+
+    @Override
+    public DistanceDuration getDistanceAndDuration(ExactLocation startLocation, ExactLocation endLocation) {
+        CompletableFuture<DistanceDuration> future;
+        if (singleFlight) {
+            String key = keyOf(startLocation, endLocation);
+            CompletableFuture<DistanceDuration> candidate = new CompletableFuture<>();
+            future = inFlight.putIfAbsent(key, candidate);
+            if (future == null) {
+                future = candidate;
+                candidate.whenComplete((result, error) -> inFlight.remove(key, candidate));
+                enqueue(startLocation, endLocation, candidate);
+            }
+        } else {
+            future = new CompletableFuture<>();
+            enqueue(startLocation, endLocation, future);
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private void enqueue(ExactLocation start, ExactLocation end, CompletableFuture<DistanceDuration> future) {
+        future.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS);
+        PendingPair pair = new PendingPair(start, end, future);
+        queue.add(pair);
+        if (queued.incrementAndGet() >= maxPairs) {
+            requestExecutor.execute(this::flush);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flush() {
+        List<PendingPair> drained = new ArrayList<>();
+        PendingPair pair;
+        while ((pair = queue.poll()) != null) {
+            queued.decrementAndGet();
+            drained.add(pair);
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        for (MatrixRequest request : pack(drained)) {
+            requestExecutor.execute(() -> execute(request));
+        }
+    }
+
+    /**
+     * Distance Matrix bills every origin x destination element of a request, so unrelated pairs
+     * are never combined: pairs are grouped by origin where an origin has several destinations,
+     * and the rest by destination, which makes the elements billed equal the pairs asked for.
+     */
+    static List<MatrixRequest> pack(List<PendingPair> pairs) {
+        Map<String, List<PendingPair>> byOrigin = new LinkedHashMap<>();
+        for (PendingPair pair : pairs) {
+            byOrigin.computeIfAbsent(locationKey(pair.start()), key -> new ArrayList<>()).add(pair);
+        }
+
+        List<MatrixRequest> requests = new ArrayList<>();
+        Map<String, List<PendingPair>> byDestination = new LinkedHashMap<>();
+        for (List<PendingPair> group : byOrigin.values()) {
+            if (group.stream().map(pair -> locationKey(pair.end())).distinct().count() > 1) {
+                addChunked(requests, group);
+            } else {
+                for (PendingPair pair : group) {
+                    byDestination.computeIfAbsent(locationKey(pair.end()), key -> new ArrayList<>()).add(pair);
+                }
+            }
+        }
+        for (List<PendingPair> group : byDestination.values()) {
+            addChunked(requests, group);
+        }
+        return requests;
+    }
+
+    private static void addChunked(List<MatrixRequest> requests, List<PendingPair> group) {
+        MatrixRequest current = new MatrixRequest();
+        for (PendingPair pair : group) {
+            if (!current.accepts(pair)) {
+                requests.add(current);
+                current = new MatrixRequest();
+            }
+            current.add(pair);
+        }
+        requests.add(current);
+    }
+
+    private void execute(MatrixRequest request) {
+        try {
+            DistanceDuration[][] matrix = delegate.getDistanceMatrix(
+                    new ArrayList<>(request.origins.values()), new ArrayList<>(request.destinations.values()));
+            List<String> originKeys = new ArrayList<>(request.origins.keySet());
+            List<String> destinationKeys = new ArrayList<>(request.destinations.keySet());
+            for (PendingPair pair : request.pairs) {
+                DistanceDuration result = matrix[originKeys.indexOf(locationKey(pair.start()))][destinationKeys.indexOf(locationKey(pair.end()))];
+                if (result == null) {
+                    pair.future().completeExceptionally(new BadRequestException("No route found between the given locations."));
+                } else {
+                    pair.future().complete(result);
+                }
+            }
+        } catch (RuntimeException e) {
+            request.pairs.forEach(pair -> pair.future().completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        requestExecutor.shutdown();
+    }
+
+    private static String keyOf(ExactLocation start, ExactLocation end) {
+        return locationKey(start) + '|' + locationKey(end);
+    }
+
+    private static String locationKey(ExactLocation location) {
+        return location.getLatitude() + "," + location.getLongitude();
+    }
+
+    record PendingPair(ExactLocation start, ExactLocation end, CompletableFuture<DistanceDuration> future) {
+    }
+
+    static final class MatrixRequest {
+        private final Map<String, ExactLocation> origins = new LinkedHashMap<>();
+        private final Map<String, ExactLocation> destinations = new LinkedHashMap<>();
+        private final List<PendingPair> pairs = new ArrayList<>();
+
+        boolean accepts(PendingPair pair) {
+            int originCount = origins.size() + (origins.containsKey(locationKey(pair.start())) ? 0 : 1);
+            int destinationCount = destinations.size() + (destinations.containsKey(locationKey(pair.end())) ? 0 : 1);
+            return originCount <= MAX_ORIGINS
+                    && destinationCount <= MAX_DESTINATIONS
+                    && originCount * destinationCount <= MAX_ELEMENTS;
+        }
+
+        void add(PendingPair pair) {
+            origins.putIfAbsent(locationKey(pair.start()), pair.start());
+            destinations.putIfAbsent(locationKey(pair.end()), pair.end());
+            pairs.add(pair);
+        }
+
+        int elements() {
+            return origins.size() * destinations.size();
+        }
+
+        List<PendingPair> pairs() {
+            return pairs;
+        }
+    }
+}
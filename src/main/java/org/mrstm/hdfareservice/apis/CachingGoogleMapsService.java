@@ -0,0 +1,46 @@
+package org.mrstm.hdfareservice.apis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.mrstm.hdfareservice.utils.GeoHash;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.time.Duration;
+
+/**
+ * Route cache in front of the Distance Matrix API. Origin and destination are quantized to
+ * geohash cells so nearby pickups/drops share an entry. Entries expire after {@code ttl},
+ * which is how long durationInTraffic is trusted; distance comes back in the same provider
+ * call, so keeping it any longer would not save a request. Concurrent misses for one route
+ * wait for a single delegate call instead of each calling the provider.
+ */
+public class CachingGoogleMapsService implements GoogleMapsService {
+    private final GoogleMapsService delegate;
+    private final Cache<String, DistanceDuration> cache;
+    private final int precision;
+
+    public CachingGoogleMapsService(GoogleMapsService delegate, MeterRegistry meterRegistry, int precision,
+                                    long maximumSize, Duration ttl) {
+        this.delegate = delegate;
+        this.precision = precision;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "google.maps.routes");
+    }
+
+    @Override
+    public DistanceDuration getDistanceAndDuration(ExactLocation startLocation, ExactLocation endLocation) {
+        return cache.get(keyOf(startLocation, endLocation), key -> delegate.getDistanceAndDuration(startLocation, endLocation));
+    }
+
+    private String keyOf(ExactLocation start, ExactLocation end) {
+        return GeoHash.encode(start.getLatitude(), start.getLongitude(), precision)
+                + ':' + GeoHash.encode(end.getLatitude(), end.getLongitude(), precision);
+    }
+}
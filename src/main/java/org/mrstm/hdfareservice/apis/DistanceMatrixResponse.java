@@ -0,0 +1,35 @@
+package org.mrstm.hdfareservice.apis;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Only the parts of the Distance Matrix response the fare service reads; everything else
+ * (the human readable "text" fields, fare, etc.) is skipped by the parser.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record DistanceMatrixResponse(
+        String status,
+        @JsonProperty("error_message") String errorMessage,
+        @JsonProperty("origin_addresses") List<String> originAddresses,
+        @JsonProperty("destination_addresses") List<String> destinationAddresses,
+        List<Row> rows) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Row(List<Element> elements) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Element(
+            String status,
+            Value distance,
+            Value duration,
+            @JsonProperty("duration_in_traffic") Value durationInTraffic) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Value(long value) {
+    }
+}
@@ -0,0 +1,50 @@
+package org.mrstm.hdfareservice.apis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.exceptions.MapsApiException;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Fallback hook of the maps chain: answers from the local engine when the provider side
+ * reports it is unavailable (circuit open, bulkhead full, timeout, provider error), and feeds
+ * successful provider answers back into the local engine's region model.
+ */
+public class FallbackGoogleMapsService implements GoogleMapsService {
+    private static final Logger log = LoggerFactory.getLogger(FallbackGoogleMapsService.class);
+
+    private final GoogleMapsService primary;
+    private final HaversineDistanceService fallback;
+    private final Counter fallbacks;
+
+    public FallbackGoogleMapsService(GoogleMapsService primary, HaversineDistanceService fallback, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.fallbacks = Counter.builder("google.maps.fallbacks")
+                .description("Distance lookups answered by the local engine because the provider was unavailable")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public DistanceDuration getDistanceAndDuration(ExactLocation startLocation, ExactLocation endLocation) {
+        return lookupRoute(startLocation, endLocation).distanceDuration();
+    }
+
+    @Override
+    public RouteLookup lookupRoute(ExactLocation startLocation, ExactLocation endLocation) {
+        DistanceDuration distanceDuration;
+        try {
+            distanceDuration = primary.getDistanceAndDuration(startLocation, endLocation);
+        } catch (MapsApiException | RestClientException e) {
+            fallbacks.increment();
+            log.debug("Maps provider unavailable, using local distance estimate: {}", e.getMessage());
+            return fallback.lookupRoute(startLocation, endLocation);
+        }
+        fallback.learn(startLocation, endLocation, distanceDuration);
+        return RouteLookup.provider(distanceDuration);
+    }
+}
@@ -7,4 +7,11 @@ import org.springframework.stereotype.Service;
 @Service
 public interface GoogleMapsService {
     DistanceDuration getDistanceAndDuration(ExactLocation startLocation, ExactLocation endLocation);
+
+    /**
+     * Like {@link #getDistanceAndDuration}, but says whether the answer came from the provider.
+     */
+    default RouteLookup lookupRoute(ExactLocation startLocation, ExactLocation endLocation) {
+        return RouteLookup.provider(getDistanceAndDuration(startLocation, endLocation));
+    }
 }
@@ -1,5 +1,10 @@
 package org.mrstm.hdfareservice.apis;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mrstm.hdfareservice.exceptions.BadRequestException;
+import org.mrstm.hdfareservice.exceptions.MapsApiException;
 import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
 import org.mrstm.uberentityservice.models.ExactLocation;
 import org.springframework.beans.factory.annotation.Value;
@@ -7,49 +12,105 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 
 @Service
 public class GoogleMapsServiceImpl implements GoogleMapsService {
     private final RestTemplate restTemplate;
+    private final Timer requestTimer;
+    private final DistributionSummary requestElements;
     @Value("${google.maps.api-key}")
     private String apiKey;
+    @Value("${google.maps.base-url:https://maps.googleapis.com}")
+    private String baseUrl;
 
-    public GoogleMapsServiceImpl(RestTemplate restTemplate) {
+    public GoogleMapsServiceImpl(RestTemplate restTemplate, MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
+        this.requestTimer = Timer.builder("google.maps.request")
+                .description("Distance Matrix HTTP round trip including response parsing")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.requestElements = DistributionSummary.builder("google.maps.request.elements")
+                .description("Origin x destination elements per Distance Matrix request")
+                .register(meterRegistry);
     }
 
 
     @Override
     public DistanceDuration getDistanceAndDuration(ExactLocation startLocation, ExactLocation endLocation) {
-        double startLat = startLocation.getLatitude();
-        double startLng = startLocation.getLongitude();
-        double endLat = endLocation.getLatitude();
-        double endLng = endLocation.getLongitude();
-        String url = String.format("https://maps.googleapis.com/maps/api/distancematrix/json?origins=%s,%s&destinations=%s,%s&departure_time=now&key=%s",
-                startLat,startLng , endLat, endLng , apiKey
+        DistanceDuration distanceDuration = getDistanceMatrix(List.of(startLocation), List.of(endLocation))[0][0];
+        if (distanceDuration == null) {
+            throw new BadRequestException("No route found between the given locations.");
+        }
+        return distanceDuration;
+    }
+
+    /**
+     * Issues a single Distance Matrix request for every origin/destination combination.
+     * The result is indexed as [origin][destination]; an element is null when Google
+     * could not resolve that pair.
+     */
+    public DistanceDuration[][] getDistanceMatrix(List<ExactLocation> origins, List<ExactLocation> destinations) {
+        String url = String.format("%s/maps/api/distancematrix/json?origins=%s&destinations=%s&departure_time=now&key=%s",
+                baseUrl, joinLocations(origins), joinLocations(destinations), apiKey
         );
-        var res = restTemplate.getForObject(url , Map.class);
-        var element = ((List<Map>) ((Map) ((List<?>) res.get("rows")).get(0)).get("elements")).get(0);
+        requestElements.record(origins.size() * destinations.size());
+        return requestTimer.record(() -> parseDistanceMatrix(
+                restTemplate.getForObject(url, DistanceMatrixResponse.class), origins.size(), destinations.size()));
+    }
 
-        List<String> destinationAddresses = (List<String>) res.get("destination_addresses");
-        List<String> originAddresses = (List<String>) res.get("origin_addresses");
+    static DistanceDuration[][] parseDistanceMatrix(DistanceMatrixResponse res, int originCount, int destinationCount) {
+        if (res == null) {
+            throw new MapsApiException("Empty response from Distance Matrix API.");
+        }
+        if (!"OK".equals(res.status())) {
+            throw new MapsApiException("Distance Matrix API returned " + res.status()
+                    + (res.errorMessage() == null ? "" : ": " + res.errorMessage()));
+        }
+        if (res.rows() == null || res.rows().size() < originCount) {
+            throw new MapsApiException("Distance Matrix API returned fewer rows than requested origins.");
+        }
 
-        String destinationAddress = destinationAddresses.get(0);
-        String originAddress = originAddresses.get(0);
+        DistanceDuration[][] matrix = new DistanceDuration[originCount][destinationCount];
+        for (int i = 0; i < originCount; i++) {
+            List<DistanceMatrixResponse.Element> elements = res.rows().get(i).elements();
+            if (elements == null || elements.size() < destinationCount) {
+                throw new MapsApiException("Distance Matrix API returned fewer elements than requested destinations.");
+            }
+            for (int j = 0; j < destinationCount; j++) {
+                DistanceMatrixResponse.Element element = elements.get(j);
+                // NOT_FOUND / ZERO_RESULTS / MAX_ROUTE_LENGTH_EXCEEDED leave the cell empty for the caller to report
+                if (!"OK".equals(element.status()) || element.distance() == null || element.duration() == null) {
+                    continue;
+                }
 
-        double distance = ((Number) ((Map) element.get("distance")).get("value")).doubleValue() / 1000.0;
-        double duration = ((Number) ((Map) element.get("duration")).get("value")).doubleValue() / 60.0;
-        double durationInTraffic = ((Number) ((Map) element.get("duration_in_traffic")).get("value")).doubleValue() / 60.0;
+                double distance = element.distance().value() / 1000.0;
+                double duration = element.duration().value() / 60.0;
+                // traffic data is not available everywhere; fall back to the free-flow duration
+                double durationInTraffic = element.durationInTraffic() == null
+                        ? duration
+                        : element.durationInTraffic().value() / 60.0;
 
-        return DistanceDuration.builder()
-                .startAddress(originAddress)
-                .endAddress(destinationAddress)
-                .distance(distance)
-                .duration(duration)
-                .durationInTraffic(durationInTraffic)
-                .build();
+                matrix[i][j] = DistanceDuration.builder()
+                        .startAddress(addressAt(res.originAddresses(), i))
+                        .endAddress(addressAt(res.destinationAddresses(), j))
+                        .distance(distance)
+                        .duration(duration)
+                        .durationInTraffic(durationInTraffic)
+                        .build();
+            }
+        }
+        return matrix;
+    }
+
+    private static String addressAt(List<String> addresses, int index) {
+        return addresses == null || addresses.size() <= index ? null : addresses.get(index);
+    }
 
+    private String joinLocations(List<ExactLocation> locations) {
+        return locations.stream()
+                .map(location -> location.getLatitude() + "," + location.getLongitude())
+                .collect(Collectors.joining("|"));
     }
 }
@@ -0,0 +1,148 @@
+package org.mrstm.hdfareservice.apis;
+
+import org.mrstm.hdfareservice.utils.GeoHash;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offline distance engine: great-circle distance scaled by a road-circuity factor, with
+ * durations from a simple speed model (a free-flow speed, and a traffic slowdown factor that
+ * differs between peak and off-peak hours for durationInTraffic). When fed real provider
+ * results through {@link #learn}, it keeps per-region (geohash cell of the origin) moving
+ * averages of those parameters, so its error shrinks in the areas we actually serve.
+ */
+public class HaversineDistanceService implements GoogleMapsService {
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    // below this the ratio is dominated by pickup/drop snapping rather than the road network
+    private static final double MIN_LEARNING_DISTANCE_KM = 0.5;
+
+    private final double defaultCircuity;
+    private final double freeFlowSpeedKmph;
+    private final double peakTrafficFactor;
+    private final double offPeakTrafficFactor;
+    private final Set<Integer> peakHours;
+    private final int regionPrecision;
+    private final double learningRate;
+    private final Clock clock;
+    private final Map<String, RegionModel> regions = new ConcurrentHashMap<>();
+
+    public HaversineDistanceService(double defaultCircuity, double freeFlowSpeedKmph, double peakTrafficFactor, double offPeakTrafficFactor,
+                                    Set<Integer> peakHours, int regionPrecision, double learningRate, Clock clock) {
+        this.defaultCircuity = defaultCircuity;
+        this.freeFlowSpeedKmph = freeFlowSpeedKmph;
+        this.peakTrafficFactor = peakTrafficFactor;
+        this.offPeakTrafficFactor = offPeakTrafficFactor;
+        this.peakHours = Set.copyOf(peakHours);
+        this.regionPrecision = regionPrecision;
+        this.learningRate = learningRate;
+        this.clock = clock;
+    }
+
+    @Override
+    public DistanceDuration getDistanceAndDuration(ExactLocation startLocation, ExactLocation endLocation) {
+        double greatCircleKm = greatCircleKm(startLocation, endLocation);
+        RegionModel region = regions.get(regionOf(startLocation));
+
+        boolean peak = isPeak();
+
+        double circuity = region == null ? defaultCircuity : region.circuity;
+        double speed = region == null ? freeFlowSpeedKmph : region.freeFlowSpeedKmph;
+        double trafficFactor;
+        if (region == null) {
+            trafficFactor = peak ? peakTrafficFactor : offPeakTrafficFactor;
+        } else {
+            trafficFactor = peak ? region.peakTrafficFactor : region.offPeakTrafficFactor;
+        }
+
+        double distanceKm = greatCircleKm * circuity;
+        double durationMin = distanceKm / speed * 60.0;
+
+        return DistanceDuration.builder()
+                .startAddress(formatLocation(startLocation))
+                .endAddress(formatLocation(endLocation))
+                .distance(distanceKm)
+                .duration(durationMin)
+                .durationInTraffic(durationMin * trafficFactor)
+                .build();
+    }
+
+    @Override
+    public RouteLookup lookupRoute(ExactLocation startLocation, ExactLocation endLocation) {
+        return RouteLookup.approximate(getDistanceAndDuration(startLocation, endLocation));
+    }
+
+    /**
+     * Folds a provider answer for the same pair into the origin region's model.
+     */
+    public void learn(ExactLocation startLocation, ExactLocation endLocation, DistanceDuration observed) {
+        double greatCircleKm = greatCircleKm(startLocation, endLocation);
+        if (greatCircleKm < MIN_LEARNING_DISTANCE_KM || observed.getDuration() <= 0) {
+            return;
+        }
+        double circuity = observed.getDistance() / greatCircleKm;
+        double speed = observed.getDistance() / (observed.getDuration() / 60.0);
+        double trafficFactor = Math.max(1.0, observed.getDurationInTraffic() / observed.getDuration());
+
+        regions.computeIfAbsent(regionOf(startLocation), key -> new RegionModel(defaultCircuity, freeFlowSpeedKmph, peakTrafficFactor, offPeakTrafficFactor))
+                .update(circuity, speed, trafficFactor, isPeak(), learningRate);
+    }
+
+    private boolean isPeak() {
+        return peakHours.contains(LocalTime.now(clock).getHour());
+    }
+
+    static double greatCircleKm(ExactLocation start, ExactLocation end) {
+        return greatCircleKm(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude());
+    }
+
+    public static double greatCircleKm(double startLatitude, double startLongitude, double endLatitude, double endLongitude) {
+        double lat1 = Math.toRadians(startLatitude);
+        double lat2 = Math.toRadians(endLatitude);
+        double dLat = lat2 - lat1;
+        double dLng = Math.toRadians(endLongitude - startLongitude);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private String regionOf(ExactLocation location) {
+        return GeoHash.encode(location.getLatitude(), location.getLongitude(), regionPrecision);
+    }
+
+    private static String formatLocation(ExactLocation location) {
+        return String.format(Locale.ROOT, "%.5f,%.5f", location.getLatitude(), location.getLongitude());
+    }
+
+    private static final class RegionModel {
+        private volatile double circuity;
+        private volatile double freeFlowSpeedKmph;
+        private volatile double peakTrafficFactor;
+        private volatile double offPeakTrafficFactor;
+
+        private RegionModel(double circuity, double freeFlowSpeedKmph, double peakTrafficFactor, double offPeakTrafficFactor) {
+            this.circuity = circuity;
+            this.freeFlowSpeedKmph = freeFlowSpeedKmph;
+            this.peakTrafficFactor = peakTrafficFactor;
+            this.offPeakTrafficFactor = offPeakTrafficFactor;
+        }
+
+        // lost updates under contention only slow convergence, so no locking
+        private void update(double observedCircuity, double observedSpeed, double observedTrafficFactor, boolean peak, double alpha) {
+            circuity += alpha * (observedCircuity - circuity);
+            freeFlowSpeedKmph += alpha * (observedSpeed - freeFlowSpeedKmph);
+            if (peak) {
+                peakTrafficFactor += alpha * (observedTrafficFactor - peakTrafficFactor);
+            } else {
+                offPeakTrafficFactor += alpha * (observedTrafficFactor - offPeakTrafficFactor);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.mrstm.hdfareservice.apis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mrstm.hdfareservice.exceptions.BadRequestException;
+import org.mrstm.hdfareservice.exceptions.MapsApiException;
+import org.mrstm.hdfareservice.resilience.AdaptiveTimeout;
+import org.mrstm.hdfareservice.resilience.CircuitBreaker;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Isolates callers from the maps provider: a semaphore bulkhead caps concurrent provider calls,
+ * each call is bounded by an {@link AdaptiveTimeout}, and a {@link CircuitBreaker} fails fast
+ * while the provider is unhealthy. Rejections, timeouts and failures surface as
+ * {@link MapsApiException} for the fallback layer above to handle.
+ */
+public class ResilientGoogleMapsService implements GoogleMapsService {
+    private final GoogleMapsService delegate;
+    private final ExecutorService executor;
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMillis;
+    private final AdaptiveTimeout timeout;
+    private final CircuitBreaker circuitBreaker;
+    private final Timer latency;
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+    private final Counter timeouts;
+    private final Counter failures;
+
+    public ResilientGoogleMapsService(GoogleMapsService delegate, ExecutorService executor, int maxConcurrentCalls,
+                                      long bulkheadWaitMillis, AdaptiveTimeout timeout, CircuitBreaker circuitBreaker,
+                                      MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+        this.timeout = timeout;
+        this.circuitBreaker = circuitBreaker;
+
+        this.latency = Timer.builder("google.maps.provider.latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.bulkheadRejections = rejected(meterRegistry, "bulkhead");
+        this.circuitRejections = rejected(meterRegistry, "circuit_open");
+        this.timeouts = Counter.builder("google.maps.provider.timeouts").register(meterRegistry);
+        this.failures = Counter.builder("google.maps.provider.failures").register(meterRegistry);
+        Gauge.builder("google.maps.provider.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .register(meterRegistry);
+        Gauge.builder("google.maps.provider.timeout.current", timeout, AdaptiveTimeout::currentMillis)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("google.maps.provider.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public DistanceDuration getDistanceAndDuration(ExactLocation startLocation, ExactLocation endLocation) {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitRejections.increment();
+            throw new MapsApiException("Maps provider circuit is open.");
+        }
+        if (!acquireBulkhead()) {
+            bulkheadRejections.increment();
+            // not the provider's fault, so the breaker is not charged
+            circuitBreaker.release();
+            throw new MapsApiException("Too many concurrent maps provider calls.");
+        }
+
+        long started = System.nanoTime();
+        long timeoutMillis = timeout.currentMillis();
+        CompletableFuture<DistanceDuration> call = CompletableFuture.supplyAsync(() -> delegate.getDistanceAndDuration(startLocation, endLocation), executor);
+        // the permit follows the real call, so timed-out calls still count against the bulkhead until they finish
+        call.whenComplete((result, error) -> bulkhead.release());
+
+        try {
+            DistanceDuration result = call.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).join();
+            long elapsed = System.nanoTime() - started;
+            latency.record(elapsed, TimeUnit.NANOSECONDS);
+            timeout.record(TimeUnit.NANOSECONDS.toMillis(elapsed));
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof TimeoutException) {
+                timeouts.increment();
+                timeout.record(timeoutMillis);
+                circuitBreaker.onFailure();
+                throw new MapsApiException("Maps provider did not answer within " + timeoutMillis + " ms.");
+            }
+            if (cause instanceof BadRequestException) {
+                // "no route" is a healthy answer from the provider's point of view
+                circuitBreaker.onSuccess();
+            } else {
+                failures.increment();
+                circuitBreaker.onFailure();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new MapsApiException(cause.getMessage());
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("google.maps.provider.rejected")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package org.mrstm.hdfareservice.apis;
+
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+
+/**
+ * A route and whether it is the provider's answer for this exact pair. Approximations (the
+ * local engine, corridor zone-to-zone profiles) are fine to show but must not be bound to a
+ * price that settlement will honour.
+ */
+public record RouteLookup(DistanceDuration distanceDuration, boolean providerBacked) {
+
+    public static RouteLookup provider(DistanceDuration distanceDuration) {
+        return new RouteLookup(distanceDuration, true);
+    }
+
+    public static RouteLookup approximate(DistanceDuration distanceDuration) {
+        return new RouteLookup(distanceDuration, false);
+    }
+}
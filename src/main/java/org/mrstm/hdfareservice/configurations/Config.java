@@ -1,13 +1,57 @@
 package org.mrstm.hdfareservice.configurations;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
 public class Config {
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(@Value("${http.client.max-connections:200}") int maxConnections,
+                                          @Value("${http.client.max-connections-per-route:100}") int maxConnectionsPerRoute,
+                                          @Value("${http.client.connect-timeout:2s}") Duration connectTimeout,
+                                          @Value("${http.client.read-timeout:5s}") Duration readTimeout,
+                                          @Value("${http.client.connection-request-timeout:1s}") Duration connectionRequestTimeout,
+                                          @Value("${http.client.idle-timeout:30s}") Duration idleTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictIdleConnections(Timeout.of(idleTimeout))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(){
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient){
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService fareExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
     }
 }
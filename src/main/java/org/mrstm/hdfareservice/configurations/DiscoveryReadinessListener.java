@@ -0,0 +1,38 @@
+package org.mrstm.hdfareservice.configurations;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mirrors Spring Boot readiness into the Eureka instance status. With
+ * {@code eureka.instance.initial-status=STARTING} the instance registers early but is only
+ * handed out by discovery once startup, including {@link StartupWarmup}, has finished.
+ */
+@Component
+public class DiscoveryReadinessListener {
+    private static final Logger log = LoggerFactory.getLogger(DiscoveryReadinessListener.class);
+
+    private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+
+    public DiscoveryReadinessListener(ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+        this.applicationInfoManager = applicationInfoManager;
+    }
+
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        InstanceInfo.InstanceStatus status = event.getState() == ReadinessState.ACCEPTING_TRAFFIC
+                ? InstanceInfo.InstanceStatus.UP
+                : InstanceInfo.InstanceStatus.OUT_OF_SERVICE;
+        applicationInfoManager.ifAvailable(manager -> {
+            manager.setInstanceStatus(status);
+            log.info("Eureka instance status set to {}", status);
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package org.mrstm.hdfareservice.configurations;
+
+import org.mrstm.hdfareservice.repositories.DriverEarningsRollupRepository;
+import org.mrstm.hdfareservice.services.FareService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Backfills the driver earnings rollup from fare history the first time the service starts against a database without it.
+ * On MySQL the backfill runs under a named lock, so when several instances start together only one rebuilds and the
+ * others skip it instead of each deleting and recomputing the table.
+ */
+@Component
+public class EarningsRollupInitializer {
+    private static final Logger log = LoggerFactory.getLogger(EarningsRollupInitializer.class);
+    private static final String LOCK_NAME = "hd_fare_earnings_rollup_backfill";
+
+    private final DriverEarningsRollupRepository driverEarningsRollupRepository;
+    private final FareService fareService;
+    private final JdbcTemplate jdbcTemplate;
+
+    public EarningsRollupInitializer(DriverEarningsRollupRepository driverEarningsRollupRepository, FareService fareService, JdbcTemplate jdbcTemplate) {
+        this.driverEarningsRollupRepository = driverEarningsRollupRepository;
+        this.fareService = fareService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        // GET_LOCK belongs to the connection, so take and release it on one connection held for the whole backfill
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!"MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName())) {
+                backfill();
+                return null;
+            }
+            try (PreparedStatement lock = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+                lock.setString(1, LOCK_NAME);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) != 1) {
+                        log.info("Another instance is backfilling the driver earnings rollup; skipping");
+                        return null;
+                    }
+                }
+            }
+            try {
+                backfill();
+            } finally {
+                try (PreparedStatement release = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    release.setString(1, LOCK_NAME);
+                    release.executeQuery().close();
+                }
+            }
+            return null;
+        });
+    }
+
+    private void backfill() {
+        if (driverEarningsRollupRepository.isEmpty()) {
+            int rows = fareService.rebuildEarningsRollup();
+            log.info("Backfilled {} driver-day earnings rows from fare history", rows);
+        }
+    }
+}
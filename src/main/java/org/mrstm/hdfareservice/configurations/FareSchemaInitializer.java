@@ -0,0 +1,156 @@
+package org.mrstm.hdfareservice.configurations;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes sure fare.booking_id is unique, which the idempotent insert path depends on, that
+ * fare_archive's (booking_id, created_at) is unique so re-running an archive batch cannot copy a
+ * fare twice (it does not make bookings unique on its own, as the key must include the
+ * partition column), that the (created_at, id) indexes used by the keyset
+ * export and archival exist, and that fare_archive is compressed and range-partitioned by month (partitions are added by
+ * {@link org.mrstm.hdfareservice.services.FareArchiver}).
+ * MySQL has no CREATE INDEX IF NOT EXISTS, so this cannot live in schema.sql. Skipped with
+ * {@code fare.schema.init.enabled=false} (the CDS training run, which has no database) and on
+ * databases other than MySQL (the H2 load-test profile creates its indexes in SQL).
+ */
+@Component
+public class FareSchemaInitializer implements InitializingBean {
+    private static final Logger log = LoggerFactory.getLogger(FareSchemaInitializer.class);
+    private static final String BOOKING_INDEX = "uk_fare_booking_id";
+    private static final String CREATED_AT_INDEX = "idx_fare_created_at_id";
+    private static final String ARCHIVE_CREATED_AT_INDEX = "idx_fare_archive_created_at_id";
+    private static final String ARCHIVE_DRIVER_INDEX = "idx_fare_archive_driver_created_at";
+    private static final String ARCHIVE_BOOKING_INDEX = "uk_fare_archive_booking_created";
+    private static final String LEGACY_ARCHIVE_BOOKING_INDEX = "uk_fare_archive_booking_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    public FareSchemaInitializer(JdbcTemplate jdbcTemplate,
+                                 @Value("${fare.schema.init.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled || !isMySql()) {
+            return;
+        }
+        ensureUniqueBookingIndex();
+        ensureIndex("fare", CREATED_AT_INDEX, "created_at, id", "fare exports will scan the table");
+        ensureArchiveLayout();
+        ensureArchiveBookingIndex();
+        ensureIndex("fare_archive", ARCHIVE_CREATED_AT_INDEX, "created_at, id", "archive exports will scan each partition");
+        ensureIndex("fare_archive", ARCHIVE_DRIVER_INDEX, "driver_id, created_at, id", "driver exports will scan the archive");
+    }
+
+    private boolean isMySql() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return "MySQL".equalsIgnoreCase(product);
+    }
+
+    private void ensureUniqueBookingIndex() {
+        Integer uniqueIndexes = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM information_schema.statistics
+                WHERE table_schema = DATABASE()
+                  AND table_name = 'fare'
+                  AND column_name = 'booking_id'
+                  AND non_unique = 0
+                  AND seq_in_index = 1
+                """, Integer.class);
+        if (uniqueIndexes != null && uniqueIndexes > 0) {
+            return;
+        }
+
+        // every duplicate-settlement guarantee rests on this index, so do not start without it
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + BOOKING_INDEX + " ON fare (booking_id)");
+            log.info("Created unique index {} on fare(booking_id)", BOOKING_INDEX);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not create unique index on fare(booking_id); duplicate fares must be cleaned up first", e);
+        }
+    }
+
+    // fare_archive tables created before the key was added to schema.sql, or under its old name
+    private void ensureArchiveBookingIndex() {
+        if (hasArchiveIndex(ARCHIVE_BOOKING_INDEX)) {
+            return;
+        }
+        if (hasArchiveIndex(LEGACY_ARCHIVE_BOOKING_INDEX)) {
+            jdbcTemplate.execute("ALTER TABLE fare_archive RENAME INDEX " + LEGACY_ARCHIVE_BOOKING_INDEX + " TO " + ARCHIVE_BOOKING_INDEX);
+            log.info("Renamed index {} on fare_archive to {}", LEGACY_ARCHIVE_BOOKING_INDEX, ARCHIVE_BOOKING_INDEX);
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + ARCHIVE_BOOKING_INDEX + " ON fare_archive (booking_id, created_at)");
+            log.info("Created unique index {} on fare_archive(booking_id, created_at)", ARCHIVE_BOOKING_INDEX);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not create unique index on fare_archive(booking_id, created_at); duplicate archived fares must be cleaned up first", e);
+        }
+    }
+
+    private boolean hasArchiveIndex(String index) {
+        Integer indexes = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM information_schema.statistics
+                WHERE table_schema = DATABASE()
+                  AND table_name = 'fare_archive'
+                  AND index_name = ?
+                """, Integer.class, index);
+        return indexes != null && indexes > 0;
+    }
+
+    private void ensureIndex(String table, String index, String columns, String consequence) {
+        Integer indexes = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM information_schema.statistics
+                WHERE table_schema = DATABASE()
+                  AND table_name = ?
+                  AND index_name = ?
+                """, Integer.class, table, index);
+        if (indexes != null && indexes > 0) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+            log.info("Created index {} on {}({})", index, table, columns);
+        } catch (RuntimeException e) {
+            log.error("Could not create index on {}({}); {}", table, columns, consequence, e);
+        }
+    }
+
+    /**
+     * Converts the plain table from schema.sql on first start. Both ALTERs are instant then,
+     * because nothing has been archived yet.
+     */
+    private void ensureArchiveLayout() {
+        Integer partitions = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM information_schema.partitions
+                WHERE table_schema = DATABASE()
+                  AND table_name = 'fare_archive'
+                  AND partition_name IS NOT NULL
+                """, Integer.class);
+        if (partitions != null && partitions > 0) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("ALTER TABLE fare_archive ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8");
+            jdbcTemplate.execute("ALTER TABLE fare_archive PARTITION BY RANGE (TO_DAYS(created_at)) (PARTITION p_future VALUES LESS THAN MAXVALUE)");
+            log.info("Partitioned fare_archive by month");
+        } catch (RuntimeException e) {
+            log.error("Could not partition fare_archive; archived fares stay in a single partition", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.mrstm.hdfareservice.configurations;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Configuration
+public class KafkaConfig {
+    private final KafkaProperties kafkaProperties;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final int maxPollRecords;
+    private final int concurrency;
+    private final Duration retryBackoff;
+    private final long batchRetries;
+    private final String deadLetterTopic;
+    private final boolean autoStartup;
+
+    public KafkaConfig(KafkaProperties kafkaProperties,
+                       KafkaTemplate<String, Object> kafkaTemplate,
+                       @Value("${fare.settlement.max-poll-records:500}") int maxPollRecords,
+                       @Value("${fare.settlement.concurrency:1}") int concurrency,
+                       @Value("${fare.settlement.retry-backoff:1s}") Duration retryBackoff,
+                       @Value("${fare.settlement.batch-retries:3}") long batchRetries,
+                       @Value("${fare.settlement.dead-letter-topic:booking-completed.DLT}") String deadLetterTopic,
+                       @Value("${spring.kafka.listener.auto-startup:true}") boolean autoStartup) {
+        this.kafkaProperties = kafkaProperties;
+        this.kafkaTemplate = kafkaTemplate;
+        this.maxPollRecords = maxPollRecords;
+        this.concurrency = concurrency;
+        this.retryBackoff = retryBackoff;
+        this.batchRetries = batchRetries;
+        this.deadLetterTopic = deadLetterTopic;
+        this.autoStartup = autoStartup;
+    }
+
+    /**
+     * Batch listener factory for settlement. Values are read as raw strings so a malformed
+     * event can still be forwarded to the dead-letter topic, and offsets are committed only
+     * after the listener returns, i.e. after the whole batch has been persisted.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> settlementListenerContainerFactory() {
+        return settlementFactory(ContainerProperties.AckMode.BATCH);
+    }
+
+    /**
+     * Same as {@link #settlementListenerContainerFactory()} but acknowledged by the listener,
+     * which holds back retry records that are not yet due and commits only what it settled.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> settlementRetryListenerContainerFactory() {
+        return settlementFactory(ContainerProperties.AckMode.MANUAL);
+    }
+
+    private ConcurrentKafkaListenerContainerFactory<String, String> settlementFactory(ContainerProperties.AckMode ackMode) {
+        Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties(null);
+        consumerProperties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProperties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        consumerProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(consumerProperties));
+        factory.setBatchListener(true);
+        // this factory is not built by Boot's configurer, so carry the standard switch over by hand
+        factory.setAutoStartup(autoStartup);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ackMode);
+        // whole-batch failures (database down, etc.) are retried, then the failing records go to the
+        // one dead-letter topic, whichever topic they were read from (not <topic>.DLT)
+        factory.setCommonErrorHandler(new DefaultErrorHandler(
+                new DeadLetterPublishingRecoverer(kafkaTemplate, (record, exception) -> new TopicPartition(deadLetterTopic, -1)),
+                new FixedBackOff(retryBackoff.toMillis(), batchRetries)));
+        return factory;
+    }
+}
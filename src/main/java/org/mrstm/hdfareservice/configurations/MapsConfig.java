@@ -0,0 +1,115 @@
+package org.mrstm.hdfareservice.configurations;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.apis.BatchingGoogleMapsService;
+import org.mrstm.hdfareservice.apis.CachingGoogleMapsService;
+import org.mrstm.hdfareservice.apis.FallbackGoogleMapsService;
+import org.mrstm.hdfareservice.apis.GoogleMapsService;
+import org.mrstm.hdfareservice.apis.GoogleMapsServiceImpl;
+import org.mrstm.hdfareservice.apis.HaversineDistanceService;
+import org.mrstm.hdfareservice.apis.ResilientGoogleMapsService;
+import org.mrstm.hdfareservice.resilience.AdaptiveTimeout;
+import org.mrstm.hdfareservice.resilience.CircuitBreaker;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Assembles the maps client chain. Requests flow fallback -> cache -> resilience -> batching
+ * -> Google, so only real provider answers are cached, the bulkhead/timeout/breaker see only
+ * real provider calls, and the local engine is consulted only when the provider side fails.
+ */
+@Configuration
+public class MapsConfig {
+
+    @Bean
+    public GoogleMapsService batchingGoogleMapsService(GoogleMapsServiceImpl googleMapsServiceImpl,
+                                                       @Value("${google.maps.batch.enabled:true}") boolean batchEnabled,
+                                                       @Value("${google.maps.batch.window:10ms}") Duration window,
+                                                       @Value("${google.maps.batch.max-pairs:25}") int maxPairs,
+                                                       @Value("${google.maps.batch.single-flight:true}") boolean singleFlight,
+                                                       @Value("${google.maps.batch.timeout:8s}") Duration timeout) {
+        if (!batchEnabled) {
+            return googleMapsServiceImpl;
+        }
+        return new BatchingGoogleMapsService(googleMapsServiceImpl, window, maxPairs, singleFlight, timeout);
+    }
+
+    @Bean
+    public GoogleMapsService resilientGoogleMapsService(@Qualifier("batchingGoogleMapsService") GoogleMapsService batchingGoogleMapsService,
+                                                        ExecutorService fareExecutor,
+                                                        MeterRegistry meterRegistry,
+                                                        @Value("${google.maps.resilience.max-concurrent-calls:64}") int maxConcurrentCalls,
+                                                        @Value("${google.maps.resilience.bulkhead-wait:20ms}") Duration bulkheadWait,
+                                                        @Value("${google.maps.resilience.timeout.initial:1500ms}") Duration initialTimeout,
+                                                        @Value("${google.maps.resilience.timeout.min:300ms}") Duration minTimeout,
+                                                        @Value("${google.maps.resilience.timeout.max:3s}") Duration maxTimeout,
+                                                        @Value("${google.maps.resilience.timeout.smoothing:0.05}") double smoothing,
+                                                        @Value("${google.maps.resilience.timeout.deviations:4}") double deviations,
+                                                        @Value("${google.maps.resilience.circuit.window-size:50}") int windowSize,
+                                                        @Value("${google.maps.resilience.circuit.minimum-calls:20}") int minimumCalls,
+                                                        @Value("${google.maps.resilience.circuit.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                                        @Value("${google.maps.resilience.circuit.open-duration:10s}") Duration openDuration,
+                                                        @Value("${google.maps.resilience.circuit.half-open-probes:3}") int halfOpenProbes) {
+        return new ResilientGoogleMapsService(batchingGoogleMapsService, fareExecutor, maxConcurrentCalls, bulkheadWait.toMillis(),
+                new AdaptiveTimeout(initialTimeout, minTimeout, maxTimeout, smoothing, deviations),
+                new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenProbes),
+                meterRegistry);
+    }
+
+    @Bean
+    public GoogleMapsService cachingGoogleMapsService(@Qualifier("resilientGoogleMapsService") GoogleMapsService resilientGoogleMapsService,
+                                                      MeterRegistry meterRegistry,
+                                                      @Value("${google.maps.cache.enabled:true}") boolean cacheEnabled,
+                                                      @Value("${google.maps.cache.precision:7}") int precision,
+                                                      @Value("${google.maps.cache.maximum-size:20000}") long maximumSize,
+                                                      @Value("${google.maps.cache.ttl:PT5M}") Duration ttl) {
+        if (!cacheEnabled) {
+            return resilientGoogleMapsService;
+        }
+        return new CachingGoogleMapsService(resilientGoogleMapsService, meterRegistry, precision, maximumSize, ttl);
+    }
+
+    @Bean
+    public HaversineDistanceService haversineDistanceService(@Value("${google.maps.local.circuity:1.35}") double circuity,
+                                                             @Value("${google.maps.local.free-flow-speed-kmph:32}") double freeFlowSpeedKmph,
+                                                             @Value("${google.maps.local.peak-traffic-factor:1.6}") double peakTrafficFactor,
+                                                             @Value("${google.maps.local.off-peak-traffic-factor:1.15}") double offPeakTrafficFactor,
+                                                             @Value("${google.maps.local.peak-hours:8,9,10,17,18,19,20}") Set<Integer> peakHours,
+                                                             @Value("${google.maps.local.region-precision:4}") int regionPrecision,
+                                                             @Value("${google.maps.local.learning-rate:0.05}") double learningRate) {
+        return new HaversineDistanceService(circuity, freeFlowSpeedKmph, peakTrafficFactor, offPeakTrafficFactor,
+                peakHours, regionPrecision, learningRate, Clock.systemDefaultZone());
+    }
+
+    @Bean
+    @Primary
+    public GoogleMapsService googleMapsService(@Qualifier("cachingGoogleMapsService") GoogleMapsService cachingGoogleMapsService,
+                                               HaversineDistanceService haversineDistanceService,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${google.maps.fallback.enabled:true}") boolean fallbackEnabled) {
+        if (!fallbackEnabled) {
+            return cachingGoogleMapsService;
+        }
+        return new FallbackGoogleMapsService(cachingGoogleMapsService, haversineDistanceService, meterRegistry);
+    }
+
+    /**
+     * Engine used for rider-facing estimates: "google" (the primary chain) or "local" for the
+     * offline estimator as a fast path. Settlement uses {@code cachingGoogleMapsService}, without
+     * the local fallback, so a fare is never persisted from an approximate route.
+     */
+    @Bean
+    public GoogleMapsService estimateMapsService(GoogleMapsService googleMapsService,
+                                                HaversineDistanceService haversineDistanceService,
+                                                @Value("${fare.estimate.engine:google}") String engine) {
+        return "local".equalsIgnoreCase(engine) ? haversineDistanceService : googleMapsService;
+    }
+}
@@ -0,0 +1,68 @@
+package org.mrstm.hdfareservice.configurations;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Polls the replica's replication status and takes it out of rotation while it is further
+ * behind than {@code maxLag}, while replication is stopped, or while it cannot be reached.
+ */
+public class ReplicaLagMonitor {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final long maxLagSeconds;
+    private volatile boolean usable;
+    private volatile long lagSeconds = -1;
+
+    public ReplicaLagMonitor(DataSource replica, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.maxLagSeconds = maxLag.toSeconds();
+        Gauge.builder("fare.datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("fare.datasource.replica.usable", this, monitor -> monitor.usable ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    public void markDown(Exception cause) {
+        if (usable) {
+            log.warn("Replica connection failed, routing reads to the primary", cause);
+        }
+        usable = false;
+    }
+
+    @Scheduled(fixedDelayString = "${fare.datasource.replica.lag-check-interval:5s}")
+    public void check() {
+        boolean wasUsable = usable;
+        try {
+            // Seconds_Behind_Source is NULL while replication is stopped
+            List<Long> lag = replicaJdbcTemplate.query("SHOW REPLICA STATUS",
+                    (rs, rowNum) -> {
+                        long seconds = rs.getLong("Seconds_Behind_Source");
+                        return rs.wasNull() ? null : seconds;
+                    });
+            Long seconds = lag.isEmpty() ? null : lag.get(0);
+            lagSeconds = seconds == null ? -1 : seconds;
+            usable = seconds != null && seconds <= maxLagSeconds;
+        } catch (RuntimeException e) {
+            lagSeconds = -1;
+            usable = false;
+        }
+        if (wasUsable != usable) {
+            log.info("Replica {} (lag {}s, limit {}s)", usable ? "back in rotation" : "taken out of rotation", lagSeconds, maxLagSeconds);
+        }
+    }
+}
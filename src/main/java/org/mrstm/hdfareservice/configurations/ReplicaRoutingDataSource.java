@@ -0,0 +1,49 @@
+package org.mrstm.hdfareservice.configurations;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Sends connections requested inside read-only transactions to the replica while the lag
+ * monitor considers it usable, and everything else to the primary. If the replica refuses a
+ * connection the request falls back to the primary and the replica is marked down until the
+ * next successful lag check. Must be wrapped in a LazyConnectionDataSourceProxy, otherwise the
+ * connection is fetched before the transaction's read-only flag is set.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    private final DataSource primary;
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.lagMonitor = lagMonitor;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && lagMonitor.isUsable() ? REPLICA : PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (PRIMARY.equals(determineCurrentLookupKey())) {
+            return primary.getConnection();
+        }
+        try {
+            return super.getConnection();
+        } catch (SQLException e) {
+            lagMonitor.markDown(e);
+            return primary.getConnection();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.mrstm.hdfareservice.configurations;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mrstm.hdfareservice.apis.DistanceMatrixResponse;
+import org.mrstm.hdfareservice.dto.BookingCompletedEvent;
+import org.mrstm.hdfareservice.dto.QuotedFareDto;
+import org.mrstm.hdfareservice.services.FareQuoteService;
+import org.mrstm.hdfareservice.services.FareRateRegistry;
+import org.mrstm.hdfareservice.strategies.FareStrategy;
+import org.mrstm.uberentityservice.dto.fare.CalculatedFareDTO;
+import org.mrstm.uberentityservice.dto.fare.EstimateFareRequestDto;
+import org.mrstm.uberentityservice.models.CarType;
+import org.mrstm.uberentityservice.models.ExactLocation;
+import org.mrstm.uberentityservice.models.FareRate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Runs the pricing hot path before the instance takes traffic: rate lookup, the fare strategy
+ * and the JSON shapes of the estimate API, the Distance Matrix response and the settlement
+ * event. Runners finish before Spring Boot reports readiness, and {@link DiscoveryReadinessListener}
+ * only marks the instance UP in Eureka on readiness, so the first real requests hit compiled code.
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static final String DISTANCE_MATRIX_JSON = """
+            {"destination_addresses":["Connaught Place, New Delhi"],"origin_addresses":["Indira Gandhi International Airport, New Delhi"],
+             "rows":[{"elements":[{"distance":{"text":"16.4 km","value":16412},"duration":{"text":"31 mins","value":1862},
+             "duration_in_traffic":{"text":"44 mins","value":2640},"status":"OK"}]}],"status":"OK"}
+            """;
+
+    private final FareRateRegistry fareRateRegistry;
+    private final FareStrategy fareStrategy;
+    private final FareQuoteService fareQuoteService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int iterations;
+    private final Duration maxDuration;
+
+    public StartupWarmup(FareRateRegistry fareRateRegistry,
+                         FareStrategy fareStrategy,
+                         FareQuoteService fareQuoteService,
+                         ObjectMapper objectMapper,
+                         @Value("${fare.warmup.enabled:true}") boolean enabled,
+                         @Value("${fare.warmup.iterations:10000}") int iterations,
+                         @Value("${fare.warmup.max-duration:15s}") Duration maxDuration) {
+        this.fareRateRegistry = fareRateRegistry;
+        this.fareStrategy = fareStrategy;
+        this.fareQuoteService = fareQuoteService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.maxDuration = maxDuration;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        long deadline = started + maxDuration.toNanos();
+        try {
+            // the ready-event load has not run yet; loading here also proves the database is reachable
+            fareRateRegistry.refresh();
+            Map<CarType, FareRate> rates = fareRateRegistry.getSnapshot().rates();
+            if (rates.isEmpty()) {
+                log.warn("No active fare rates, skipping pricing warmup");
+                return;
+            }
+            ExactLocation start = objectMapper.convertValue(Map.of("latitude", 28.5562, "longitude", 77.1000), ExactLocation.class);
+            ExactLocation end = objectMapper.convertValue(Map.of("latitude", 28.6315, "longitude", 77.2167), ExactLocation.class);
+
+            int completed = 0;
+            double checksum = 0;
+            while (completed < iterations && System.nanoTime() < deadline) {
+                for (CarType carType : rates.keySet()) {
+                    checksum += exercise(carType, completed, start, end);
+                }
+                completed++;
+            }
+            log.info("Warmed up pricing path with {} iterations in {} ms (checksum {})",
+                    completed, Duration.ofNanos(System.nanoTime() - started).toMillis(), Math.round(checksum));
+        } catch (RuntimeException | JsonProcessingException e) {
+            // warmup only makes the first requests faster; never block startup on it
+            log.warn("Pricing warmup failed, continuing with a cold JIT", e);
+        }
+    }
+
+    private double exercise(CarType carType, int iteration, ExactLocation start, ExactLocation end) throws JsonProcessingException {
+        FareRate fareRate = fareRateRegistry.getActiveRate(carType);
+        double distance = 1 + iteration % 40;
+        double duration = 4 + iteration % 90;
+        double surge = 1 + (iteration % 5) * 0.25;
+        double fare = fareStrategy.calculate(fareRate, distance, duration, surge, 10);
+
+        EstimateFareRequestDto request = objectMapper.readValue(objectMapper.writeValueAsBytes(Map.of(
+                "startLocation", start, "endLocation", end, "carType", carType.name())), EstimateFareRequestDto.class);
+        DistanceMatrixResponse response = objectMapper.readValue(DISTANCE_MATRIX_JSON, DistanceMatrixResponse.class);
+        String quoteToken = iteration % 16 == 0
+                ? fareQuoteService.issue(iteration, carType, fareRate.getId(), request.getStartLocation(), request.getEndLocation(), distance, duration, surge, 10, fare)
+                : null;
+        byte[] estimate = objectMapper.writeValueAsBytes(QuotedFareDto.builder()
+                .estimate(CalculatedFareDTO.builder()
+                        .startAddress(response.originAddresses().get(0))
+                        .endAddress(response.destinationAddresses().get(0))
+                        .distance(distance)
+                        .duration(duration)
+                        .fare(fare)
+                        .build())
+                .quoteToken(quoteToken)
+                .build());
+        BookingCompletedEvent event = objectMapper.readValue(objectMapper.writeValueAsBytes(
+                new BookingCompletedEvent((long) iteration, quoteToken, (long) iteration)), BookingCompletedEvent.class);
+        return fare + estimate.length + event.getBookingId();
+    }
+}
@@ -0,0 +1,160 @@
+package org.mrstm.hdfareservice.consumers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.mrstm.hdfareservice.dto.BookingCompletedEvent;
+import org.mrstm.hdfareservice.dto.SettlementResult;
+import org.mrstm.hdfareservice.services.AdmissionController;
+import org.mrstm.hdfareservice.services.FareService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Settles fares for completed bookings in batches. Records that fail on their own are
+ * routed to the retry topic (transient problems, bounded by max-attempts) or straight to the
+ * dead-letter topic; the batch's offsets are committed once the listener returns (with fare
+ * write-behind enabled, that is before the fares are committed to MySQL). Retry records are
+ * settled only {@code retry-delay} after they were forwarded: until then their partition is
+ * paused and the records are redelivered, so a struggling dependency is not hammered again
+ * straight away.
+ */
+@Component
+public class BookingCompletedConsumer {
+    private static final Logger log = LoggerFactory.getLogger(BookingCompletedConsumer.class);
+    static final String ATTEMPT_HEADER = "x-settlement-attempt";
+    static final String REASON_HEADER = "x-settlement-failure";
+
+    private final FareService fareService;
+    private final AdmissionController admissionController;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String retryTopic;
+    private final String deadLetterTopic;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+
+    public BookingCompletedConsumer(FareService fareService,
+                                    AdmissionController admissionController,
+                                    KafkaTemplate<String, Object> kafkaTemplate,
+                                    ObjectMapper objectMapper,
+                                    @Value("${fare.settlement.retry-topic:booking-completed-retry}") String retryTopic,
+                                    @Value("${fare.settlement.dead-letter-topic:booking-completed.DLT}") String deadLetterTopic,
+                                    @Value("${fare.settlement.max-attempts:5}") int maxAttempts,
+                                    @Value("${fare.settlement.retry-delay:30s}") Duration retryDelay) {
+        this.fareService = fareService;
+        this.admissionController = admissionController;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.retryTopic = retryTopic;
+        this.deadLetterTopic = deadLetterTopic;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+    }
+
+    @KafkaListener(
+            topics = "${fare.settlement.topic:booking-completed}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "settlementListenerContainerFactory")
+    public void onBookingsCompleted(List<ConsumerRecord<String, String>> records) {
+        settle(records);
+    }
+
+    @KafkaListener(
+            topics = "${fare.settlement.retry-topic:booking-completed-retry}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "settlementRetryListenerContainerFactory")
+    public void onRetriesDue(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) {
+        long now = System.currentTimeMillis();
+        int due = 0;
+        while (due < records.size() && records.get(due).timestamp() + retryDelay.toMillis() <= now) {
+            due++;
+        }
+        settle(records.subList(0, due));
+        if (due == records.size()) {
+            acknowledgment.acknowledge();
+        } else {
+            // commits what was settled and redelivers the rest once the first of them is due
+            long waitMillis = records.get(due).timestamp() + retryDelay.toMillis() - now;
+            acknowledgment.nack(due, Duration.ofMillis(Math.min(waitMillis, retryDelay.toMillis())));
+        }
+    }
+
+    private void settle(List<ConsumerRecord<String, String>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Map<Long, ConsumerRecord<String, String>> recordsByBooking = new LinkedHashMap<>();
+        Map<Long, BookingCompletedEvent> eventsByBooking = new LinkedHashMap<>();
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+
+        for (ConsumerRecord<String, String> record : records) {
+            BookingCompletedEvent event = parse(record);
+            if (event == null || event.getBookingId() == null) {
+                sends.add(route(deadLetterTopic, record, record.value(), "Malformed booking completed event.", attemptOf(record)));
+            } else {
+                recordsByBooking.put(event.getBookingId(), record);
+                eventsByBooking.put(event.getBookingId(), event);
+            }
+        }
+
+        if (!recordsByBooking.isEmpty()) {
+            SettlementResult result;
+            AdmissionController.Permit permit = admissionController.admitSettlement();
+            boolean dropped = true;
+            try {
+                result = fareService.settleCompletedBookings(eventsByBooking);
+                dropped = false;
+            } finally {
+                permit.release(dropped);
+            }
+            log.info("Settled {} fares ({} duplicates, {} failures) from {} records",
+                    result.getSettled().size(), result.getDuplicates().size(), result.getFailures().size(), records.size());
+
+            result.getFailures().forEach((bookingId, failure) -> {
+                ConsumerRecord<String, String> record = recordsByBooking.get(bookingId);
+                int attempt = attemptOf(record) + 1;
+                boolean retry = failure.retryable() && attempt < maxAttempts;
+                sends.add(route(retry ? retryTopic : deadLetterTopic, record, eventsByBooking.get(bookingId), failure.reason(), attempt));
+            });
+        }
+
+        // the batch is only acknowledged once every failed record is safely on its retry/DLT topic
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private BookingCompletedEvent parse(ConsumerRecord<String, String> record) {
+        try {
+            return objectMapper.readValue(record.value(), BookingCompletedEvent.class);
+        } catch (Exception e) {
+            log.warn("Could not parse booking completed event at offset {}", record.offset(), e);
+            return null;
+        }
+    }
+
+    private CompletableFuture<?> route(String topic, ConsumerRecord<String, String> record, Object value, String reason, int attempt) {
+        ProducerRecord<String, Object> forward = new ProducerRecord<>(topic, record.key(), value);
+        forward.headers().add(ATTEMPT_HEADER, String.valueOf(attempt).getBytes(StandardCharsets.UTF_8));
+        forward.headers().add(REASON_HEADER, reason.getBytes(StandardCharsets.UTF_8));
+        return kafkaTemplate.send(forward);
+    }
+
+    private int attemptOf(ConsumerRecord<String, String> record) {
+        Header header = record.headers().lastHeader(ATTEMPT_HEADER);
+        return header == null ? 0 : Integer.parseInt(new String(header.value(), StandardCharsets.UTF_8));
+    }
+}
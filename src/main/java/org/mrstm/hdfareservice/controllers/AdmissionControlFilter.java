@@ -0,0 +1,127 @@
+package org.mrstm.hdfareservice.controllers;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.mrstm.hdfareservice.services.AdmissionController;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HexFormat;
+
+/**
+ * Runs estimate and driver analytics requests through the {@link AdmissionController} before
+ * they reach {@link FareController}. Refused estimates get an immediate 429 and analytics a
+ * 503, both with Retry-After and without touching the executor, database or Maps. Estimates
+ * complete asynchronously, so their slot is held until the async response finishes.
+ */
+@Component
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private final AdmissionController admissionController;
+
+    public AdmissionControlFilter(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admissionController.isEnabled() || classify(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean estimate = classify(request) == AdmissionController.RequestClass.ESTIMATE;
+        AdmissionController.Admission admission = estimate
+                ? admissionController.tryAdmitEstimate(clientKey(request))
+                : admissionController.tryAdmitAnalytics();
+        if (!admission.isAdmitted()) {
+            reject(response, estimate ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        AdmissionController.Permit permit = admission.permit();
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            permit.release(true);
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new ReleasingListener(permit, response));
+        } else {
+            permit.release(isOverloaded(response.getStatus()));
+        }
+    }
+
+    private AdmissionController.RequestClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if ("POST".equals(request.getMethod()) && path.startsWith("/fare/estimate")) {
+            return AdmissionController.RequestClass.ESTIMATE;
+        }
+        if ("GET".equals(request.getMethod()) && path.startsWith("/fare/analytics")) {
+            return AdmissionController.RequestClass.ANALYTICS;
+        }
+        return null;
+    }
+
+    /**
+     * The caller's address as resolved by the servlet container from trusted proxies
+     * ({@code server.forward-headers-strategy=native}), never a header the client sets itself.
+     * IPv6 callers are keyed by their /64, since a single host can rotate through one.
+     */
+    private static String clientKey(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        if (address.indexOf(':') < 0) {
+            return address;
+        }
+        try {
+            byte[] bytes = InetAddress.getByName(address).getAddress();
+            return bytes.length == 16 ? HexFormat.of().formatHex(bytes, 0, 8) + "::/64" : address;
+        } catch (UnknownHostException e) {
+            return address;
+        }
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Server is busy, retry shortly.\"}");
+    }
+
+    private static boolean isOverloaded(int status) {
+        return status == HttpStatus.SERVICE_UNAVAILABLE.value() || status == HttpStatus.GATEWAY_TIMEOUT.value();
+    }
+
+    private record ReleasingListener(AdmissionController.Permit permit, HttpServletResponse response) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.release(isOverloaded(response.getStatus()));
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
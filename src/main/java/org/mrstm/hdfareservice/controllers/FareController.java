@@ -1,27 +1,60 @@
 package org.mrstm.hdfareservice.controllers;
 
+import org.mrstm.hdfareservice.dto.BulkEstimateRequestDto;
+import org.mrstm.hdfareservice.dto.BulkEstimateResponseDto;
+import org.mrstm.hdfareservice.dto.DriverAnalyticsDto;
+import org.mrstm.hdfareservice.services.FareExportService;
 import org.mrstm.hdfareservice.services.FareService;
 import org.mrstm.uberentityservice.dto.fare.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/fare")
 public class FareController {
 
     private final FareService fareService;
+    private final FareExportService fareExportService;
+    private final double defaultDiscount;
 
-    public FareController(FareService fareService) {
+    public FareController(FareService fareService,
+                          FareExportService fareExportService,
+                          @Value("${fare.pricing.default-discount:10}") double defaultDiscount) {
         this.fareService = fareService;
+        this.fareExportService = fareExportService;
+        this.defaultDiscount = defaultDiscount;
     }
 
     @PostMapping("/estimate")
-    public ResponseEntity<CalculatedFareDTO> estimateFare(@RequestBody EstimateFareRequestDto estimateFareRequestDto) {
-        return new ResponseEntity<>(fareService.estimateFare(estimateFareRequestDto, 10), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<CalculatedFareDTO>> estimateFare(
+            @RequestHeader(value = "X-User-Id", required = false) Long riderId,
+            @RequestBody EstimateFareRequestDto estimateFareRequestDto) {
+        // no X-Fare-Quote for approximate routes or anonymous riders; those bookings are priced at settlement
+        return fareService.estimateFareAsync(estimateFareRequestDto, riderId, defaultDiscount)
+                .thenApply(quoted -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (quoted.getQuoteToken() != null) {
+                        response.header("X-Fare-Quote", quoted.getQuoteToken());
+                    }
+                    return response.body(quoted.getEstimate());
+                });
+    }
+
+    @PostMapping("/estimate/bulk")
+    public CompletableFuture<ResponseEntity<BulkEstimateResponseDto>> estimateFares(
+            @RequestHeader(value = "X-User-Id", required = false) Long riderId,
+            @RequestBody BulkEstimateRequestDto bulkEstimateRequestDto) {
+        return fareService.estimateFares(bulkEstimateRequestDto, riderId, defaultDiscount)
+                .thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/add-rate") // just for production
@@ -29,6 +62,14 @@ public class FareController {
         return new ResponseEntity<>(fareService.addNewFareRate(fareRateDto), HttpStatus.CREATED);
     }
 
+    @PostMapping("/analytics/rebuild")
+    public ResponseEntity<String> rebuildEarningsRollup(@RequestHeader("X-User-Role") String role) {
+        if (!"ADMIN".equalsIgnoreCase(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok("Rebuilt " + fareService.rebuildEarningsRollup() + " driver-day rows");
+    }
+
     @GetMapping("/analytics")
     public ResponseEntity<AnalyticsResponseDto> getEarningsOfDriver(
             @RequestHeader("X-User-Id") Long userId,
@@ -67,4 +108,51 @@ public class FareController {
 
         return ResponseEntity.ok(fareService.getDailyEarningsBetween(userId, fromDate, toDate));
     }
+
+    @GetMapping("/analytics/summary")
+    public ResponseEntity<DriverAnalyticsDto> getDriverAnalytics(
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestHeader("X-User-Role") String role,
+            @RequestParam(required = false) LocalDate fromDate,
+            @RequestParam(required = false) LocalDate toDate) {
+
+        if (!"DRIVER".equalsIgnoreCase(role)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        if (fromDate == null || toDate == null) {
+            toDate = LocalDate.now();
+            fromDate = toDate.minusDays(30);
+        }
+
+        return ResponseEntity.ok(fareService.getDriverAnalytics(userId, fromDate, toDate));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFares(
+            @RequestHeader("X-User-Id") Long userId,
+            @RequestHeader("X-User-Role") String role,
+            @RequestParam(required = false) Long driverId,
+            @RequestParam LocalDate fromDate,
+            @RequestParam LocalDate toDate,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        // drivers export their own fares; admins may export one driver or all of them
+        Long exportDriverId;
+        if ("DRIVER".equalsIgnoreCase(role)) {
+            exportDriverId = userId;
+        } else if ("ADMIN".equalsIgnoreCase(role)) {
+            exportDriverId = driverId;
+        } else {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        FareExportService.Format exportFormat = FareExportService.Format.of(format);
+        String fileName = "fares-" + (exportDriverId == null ? "all" : exportDriverId) + "-" + fromDate + "-" + toDate + "." + exportFormat.getExtension();
+        StreamingResponseBody body = out -> fareExportService.export(exportDriverId, fromDate, toDate, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
 }
@@ -0,0 +1,16 @@
+package org.mrstm.hdfareservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingCompletedEvent {
+    private Long bookingId;
+    private String quoteToken; // X-Fare-Quote the rider accepted, if any
+    private Long riderId; // who booked; a quote only settles bookings of the rider it was issued to
+}
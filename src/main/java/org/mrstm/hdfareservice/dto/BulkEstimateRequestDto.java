@@ -0,0 +1,19 @@
+package org.mrstm.hdfareservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEstimateRequestDto {
+    private ExactLocation startLocation;
+    private List<ExactLocation> endLocations;
+    private List<String> carTypes; // empty means every car type with an active rate
+}
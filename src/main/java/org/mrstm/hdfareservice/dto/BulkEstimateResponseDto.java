@@ -0,0 +1,30 @@
+package org.mrstm.hdfareservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEstimateResponseDto {
+    private String startAddress;
+    private List<DestinationEstimate> destinations;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DestinationEstimate {
+        private String endAddress;
+        private double distance;
+        private double duration;
+        private Map<String, Double> fares;
+        private Map<String, String> quoteTokens;
+    }
+}
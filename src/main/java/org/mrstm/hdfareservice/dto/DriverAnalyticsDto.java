@@ -0,0 +1,21 @@
+package org.mrstm.hdfareservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.mrstm.uberentityservice.dto.fare.DailyEarningsDto;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriverAnalyticsDto {
+    private double totalEarnings;
+    private double thisMonthEarnings;
+    private double pendingEarnings;
+    private double withdrawnEarnings;
+    private List<DailyEarningsDto> dailyEarnings;
+}
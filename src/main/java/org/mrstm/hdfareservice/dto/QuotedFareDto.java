@@ -0,0 +1,16 @@
+package org.mrstm.hdfareservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.mrstm.uberentityservice.dto.fare.CalculatedFareDTO;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuotedFareDto {
+    private CalculatedFareDTO estimate;
+    private String quoteToken;
+}
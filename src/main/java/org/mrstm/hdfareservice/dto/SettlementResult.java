@@ -0,0 +1,30 @@
+package org.mrstm.hdfareservice.dto;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class SettlementResult {
+    private final List<Long> settled = new ArrayList<>();
+    private final List<Long> duplicates = new ArrayList<>();
+    private final Map<Long, Failure> failures = new LinkedHashMap<>();
+
+    public void settled(Long bookingId) {
+        settled.add(bookingId);
+    }
+
+    public void duplicate(Long bookingId) {
+        duplicates.add(bookingId);
+    }
+
+    public void failed(Long bookingId, String reason, boolean retryable) {
+        failures.put(bookingId, new Failure(reason, retryable));
+    }
+
+    public record Failure(String reason, boolean retryable) {
+    }
+}
@@ -0,0 +1,7 @@
+package org.mrstm.hdfareservice.exceptions;
+
+public class MapsApiException extends RuntimeException {
+    public MapsApiException(String message) {
+        super(message);
+    }
+}
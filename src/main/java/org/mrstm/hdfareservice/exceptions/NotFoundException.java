@@ -0,0 +1,7 @@
+package org.mrstm.hdfareservice.exceptions;
+
+public class NotFoundException extends RuntimeException {
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
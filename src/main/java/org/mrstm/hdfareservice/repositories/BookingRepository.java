@@ -1,9 +1,15 @@
 package org.mrstm.hdfareservice.repositories;
 
 import org.mrstm.uberentityservice.models.Booking;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface BookingRepository extends JpaRepository<Booking , Long> {
+    @EntityGraph(attributePaths = {"startLocation", "endLocation", "driver"})
+    List<Booking> findAllByIdIn(Collection<Long> ids);
 }
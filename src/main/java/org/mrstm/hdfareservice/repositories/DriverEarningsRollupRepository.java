@@ -0,0 +1,114 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Per-driver, per-day earnings totals. Rows are bumped in the same transaction that inserts
+ * a fare, so reads are bounded by the number of days in range rather than the fare history.
+ * Days are passed in from the application clock, the same instant fare.created_at is stamped
+ * with, so increments, rebuilds and the "today" analytics compares against all agree. This is
+ * the only read path for driver analytics; fares themselves are never summed per request.
+ */
+@Repository
+public class DriverEarningsRollupRepository {
+    private static final String INCREMENT = """
+            INSERT INTO driver_daily_earnings (driver_id, earning_date, total_earnings, ride_count, updated_at)
+            VALUES (?, ?, ?, 1, NOW(6))
+            ON DUPLICATE KEY UPDATE total_earnings = total_earnings + VALUES(total_earnings),
+                                    ride_count = ride_count + 1,
+                                    updated_at = VALUES(updated_at)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DriverEarningsRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void increment(Long driverId, LocalDate date, double amount) {
+        jdbcTemplate.update(INCREMENT, driverId, date, amount);
+    }
+
+    public void batchIncrement(LocalDate date, List<DriverEarning> earnings) {
+        if (earnings.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INCREMENT, earnings, earnings.size(), (ps, earning) -> {
+            ps.setLong(1, earning.driverId());
+            ps.setObject(2, date);
+            ps.setDouble(3, earning.amount());
+        });
+    }
+
+    public List<DailyEarning> getDailyEarningsBetween(Long driverId, LocalDate fromDate, LocalDate toDate) {
+        return jdbcTemplate.query("""
+                        SELECT earning_date, total_earnings
+                        FROM driver_daily_earnings
+                        WHERE driver_id = ? AND earning_date BETWEEN ? AND ?
+                        ORDER BY earning_date
+                        """,
+                (rs, rowNum) -> new DailyEarning(rs.getObject("earning_date", LocalDate.class), rs.getDouble("total_earnings")),
+                driverId, fromDate, toDate);
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM driver_daily_earnings LIMIT 1").isEmpty();
+    }
+
+    /**
+     * First and last day found in the live fares, the archive or the rollup itself, or null when all three are empty.
+     * Each bound is a MIN/MAX over an index, so this does not scan the fare history.
+     */
+    public DateSpan historySpan() {
+        return jdbcTemplate.queryForObject("""
+                        SELECT MIN(first_day) AS first_day, MAX(last_day) AS last_day
+                        FROM (SELECT CAST(MIN(created_at) AS DATE) AS first_day, CAST(MAX(created_at) AS DATE) AS last_day FROM fare
+                              UNION ALL
+                              SELECT CAST(MIN(created_at) AS DATE), CAST(MAX(created_at) AS DATE) FROM fare_archive
+                              UNION ALL
+                              SELECT MIN(earning_date), MAX(earning_date) FROM driver_daily_earnings) spans
+                        """,
+                (rs, rowNum) -> {
+                    LocalDate first = rs.getObject("first_day", LocalDate.class);
+                    return first == null ? null : new DateSpan(first, rs.getObject("last_day", LocalDate.class));
+                });
+    }
+
+    /**
+     * Recomputes the rows for days in [fromDate, toDate) from the live and archived fares. Call inside a transaction
+     * so readers never see the window half-built; windows are kept short so each transaction stays small.
+     */
+    public int rebuild(LocalDate fromDate, LocalDate toDate) {
+        jdbcTemplate.update("DELETE FROM driver_daily_earnings WHERE earning_date >= ? AND earning_date < ?", fromDate, toDate);
+        LocalDateTime from = fromDate.atStartOfDay();
+        LocalDateTime to = toDate.atStartOfDay();
+        return jdbcTemplate.update("""
+                INSERT INTO driver_daily_earnings (driver_id, earning_date, total_earnings, ride_count, updated_at)
+                SELECT driver_id, CAST(created_at AS DATE), SUM(final_fare), COUNT(*), NOW(6)
+                FROM (SELECT b.driver_id, f.created_at, f.final_fare
+                      FROM fare f
+                      JOIN booking b ON b.id = f.booking_id
+                      WHERE f.created_at >= ? AND f.created_at < ?
+                      UNION ALL
+                      SELECT a.driver_id, a.created_at, a.final_fare
+                      FROM fare_archive a
+                      WHERE a.created_at >= ? AND a.created_at < ?) fares
+                WHERE driver_id IS NOT NULL
+                GROUP BY driver_id, CAST(created_at AS DATE)
+                """, from, to, from, to);
+    }
+
+    public record DriverEarning(Long driverId, double amount) {
+    }
+
+    public record DailyEarning(LocalDate date, double total) {
+    }
+
+    public record DateSpan(LocalDate first, LocalDate last) {
+    }
+}
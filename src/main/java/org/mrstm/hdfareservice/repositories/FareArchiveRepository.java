@@ -0,0 +1,126 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Moves old fares from the live table into fare_archive, which is range-partitioned by month
+ * on created_at. Rows keep their id and gain the booking's driver_id, so archive reads need no
+ * join against booking.
+ */
+@Repository
+public class FareArchiveRepository {
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String MOVE = """
+            INSERT INTO fare_archive (id, booking_id, driver_id, car_type, distance, duration, surge, discount,
+                                             final_fare, created_at, updated_at, archived_at)
+            SELECT f.id, f.booking_id, b.driver_id, f.car_type, f.distance, f.duration, f.surge, f.discount,
+                   f.final_fare, f.created_at, f.updated_at, NOW(6)
+            FROM fare f
+            LEFT JOIN booking b ON b.id = f.booking_id
+            WHERE f.created_at < ? AND (f.created_at < ? OR (f.created_at = ? AND f.id <= ?))
+            ON DUPLICATE KEY UPDATE archived_at = fare_archive.archived_at
+            """;
+    private static final String DELETE = """
+            DELETE FROM fare
+            WHERE created_at < ? AND (created_at < ? OR (created_at = ? AND id <= ?))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FareArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<LocalDateTime> oldestLiveBefore(LocalDateTime cutoff) {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM fare WHERE created_at < ?",
+                Timestamp.class, Timestamp.valueOf(cutoff));
+        return Optional.ofNullable(oldest).map(Timestamp::toLocalDateTime);
+    }
+
+    public boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM information_schema.partitions
+                WHERE table_schema = DATABASE()
+                  AND table_name = 'fare_archive'
+                  AND partition_name = 'p_future'
+                """, Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Months that already have their own partition; empty if the archive is not partitioned.
+     */
+    public NavigableSet<YearMonth> partitionMonths() {
+        List<String> names = jdbcTemplate.queryForList("""
+                SELECT partition_name
+                FROM information_schema.partitions
+                WHERE table_schema = DATABASE()
+                  AND table_name = 'fare_archive'
+                  AND partition_name LIKE 'p______'
+                """, String.class);
+        TreeSet<YearMonth> months = new TreeSet<>();
+        for (String name : names) {
+            months.add(YearMonth.parse(name, PARTITION_NAME));
+        }
+        return months;
+    }
+
+    /**
+     * Splits the catch-all partition so each month gets its own partition. Only months after the
+     * newest existing partition can be added this way; older rows land in the first partition.
+     */
+    public void addPartitions(List<YearMonth> months) {
+        if (months.isEmpty()) {
+            return;
+        }
+        StringBuilder ddl = new StringBuilder("ALTER TABLE fare_archive REORGANIZE PARTITION p_future INTO (");
+        for (YearMonth month : months) {
+            ddl.append("PARTITION ").append(month.format(PARTITION_NAME))
+                    .append(" VALUES LESS THAN (TO_DAYS('").append(month.plusMonths(1).atDay(1)).append("')), ");
+        }
+        ddl.append("PARTITION p_future VALUES LESS THAN MAXVALUE)");
+        jdbcTemplate.execute(ddl.toString());
+    }
+
+    /**
+     * Copies the oldest {@code batchSize} live fares before {@code cutoff} into the archive and
+     * deletes them from the live table. Call inside a transaction so a fare is never in both or
+     * neither; rows another instance already archived are left as they are, while any other
+     * insert error still fails the batch.
+     *
+     * @return the number of fares moved; 0 once nothing older than the cutoff is left
+     */
+    public int moveBatch(LocalDateTime cutoff, int batchSize) {
+        // keyset bound of this batch, read from the (created_at, id) index only
+        List<Bound> keys = jdbcTemplate.query("""
+                        SELECT created_at, id
+                        FROM fare
+                        WHERE created_at < ?
+                        ORDER BY created_at, id
+                        LIMIT ?
+                        """,
+                (rs, rowNum) -> new Bound(rs.getTimestamp("created_at"), rs.getLong("id")),
+                Timestamp.valueOf(cutoff), batchSize);
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Bound last = keys.get(keys.size() - 1);
+        Object[] args = {Timestamp.valueOf(cutoff), last.createdAt(), last.createdAt(), last.id()};
+        jdbcTemplate.update(MOVE, args);
+        return jdbcTemplate.update(DELETE, args);
+    }
+
+    private record Bound(Timestamp createdAt, long id) {
+    }
+}
@@ -0,0 +1,136 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Keyset-paginated reads of the live and archived fares for exports. Each page is one short, bounded
+ * query that resumes after the last (created_at, id) seen, so an export of any size never
+ * holds a long-running cursor or more than one page of rows, and rows are handed to the
+ * caller as they are read instead of being collected into a list.
+ */
+@Repository
+public class FareExportRepository {
+    // Each branch is limited on its own so both use their (created_at, id) index; fares move
+    // between the tables in one transaction, so a row is never seen in both.
+    private static final String PAGE_FOR_DRIVER = """
+            (SELECT f.id, f.booking_id, b.driver_id, f.car_type, f.distance, f.duration, f.surge, f.discount, f.final_fare, f.created_at
+             FROM fare f
+             JOIN booking b ON b.id = f.booking_id
+             WHERE b.driver_id = ?
+               AND f.created_at >= ? AND f.created_at < ?
+               AND (f.created_at > ? OR (f.created_at = ? AND f.id > ?))
+             ORDER BY f.created_at, f.id
+             LIMIT ?)
+            UNION ALL
+            (SELECT a.id, a.booking_id, a.driver_id, a.car_type, a.distance, a.duration, a.surge, a.discount, a.final_fare, a.created_at
+             FROM fare_archive a
+             WHERE a.driver_id = ?
+               AND a.created_at >= ? AND a.created_at < ?
+               AND (a.created_at > ? OR (a.created_at = ? AND a.id > ?))
+             ORDER BY a.created_at, a.id
+             LIMIT ?)
+            ORDER BY created_at, id
+            LIMIT ?
+            """;
+    private static final String PAGE_FOR_ALL = """
+            (SELECT f.id, f.booking_id, b.driver_id, f.car_type, f.distance, f.duration, f.surge, f.discount, f.final_fare, f.created_at
+             FROM fare f
+             JOIN booking b ON b.id = f.booking_id
+             WHERE f.created_at >= ? AND f.created_at < ?
+               AND (f.created_at > ? OR (f.created_at = ? AND f.id > ?))
+             ORDER BY f.created_at, f.id
+             LIMIT ?)
+            UNION ALL
+            (SELECT a.id, a.booking_id, a.driver_id, a.car_type, a.distance, a.duration, a.surge, a.discount, a.final_fare, a.created_at
+             FROM fare_archive a
+             WHERE a.created_at >= ? AND a.created_at < ?
+               AND (a.created_at > ? OR (a.created_at = ? AND a.id > ?))
+             ORDER BY a.created_at, a.id
+             LIMIT ?)
+            ORDER BY created_at, id
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FareExportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Streams one page to {@code consumer} and returns the cursor to resume from, or null when
+     * this was the last page.
+     *
+     * @param driverId null for every driver
+     */
+    @Transactional(readOnly = true)
+    public Cursor readPage(Long driverId, LocalDateTime from, LocalDateTime to, Cursor after, int pageSize, RowConsumer consumer) {
+        Timestamp afterCreatedAt = Timestamp.valueOf(after.createdAt());
+        int[] count = {0};
+        Cursor[] last = {null};
+
+        jdbcTemplate.query(connection -> {
+            var ps = connection.prepareStatement(driverId == null ? PAGE_FOR_ALL : PAGE_FOR_DRIVER);
+            ps.setFetchSize(pageSize);
+            int i = 1;
+            // live branch, then archive branch, then the outer limit
+            for (int branch = 0; branch < 2; branch++) {
+                if (driverId != null) {
+                    ps.setLong(i++, driverId);
+                }
+                ps.setTimestamp(i++, Timestamp.valueOf(from));
+                ps.setTimestamp(i++, Timestamp.valueOf(to));
+                ps.setTimestamp(i++, afterCreatedAt);
+                ps.setTimestamp(i++, afterCreatedAt);
+                ps.setLong(i++, after.id());
+                ps.setInt(i++, pageSize);
+            }
+            ps.setInt(i, pageSize);
+            return ps;
+        }, (ResultSet rs) -> {
+            FareExportRow row = mapRow(rs);
+            consumer.accept(row);
+            count[0]++;
+            last[0] = new Cursor(row.createdAt(), row.id());
+        });
+        return count[0] < pageSize ? null : last[0];
+    }
+
+    private static FareExportRow mapRow(ResultSet rs) throws SQLException {
+        long driverId = rs.getLong("driver_id");
+        boolean noDriver = rs.wasNull();
+        return new FareExportRow(
+                rs.getLong("id"),
+                rs.getLong("booking_id"),
+                noDriver ? null : driverId,
+                rs.getString("car_type"),
+                rs.getDouble("distance"),
+                rs.getDouble("duration"),
+                rs.getDouble("surge"),
+                rs.getDouble("discount"),
+                rs.getDouble("final_fare"),
+                rs.getTimestamp("created_at").toLocalDateTime());
+    }
+
+    public record Cursor(LocalDateTime createdAt, long id) {
+        public static Cursor start(LocalDateTime from) {
+            return new Cursor(from, 0);
+        }
+    }
+
+    public record FareExportRow(long id, long bookingId, Long driverId, String carType, double distance, double duration,
+                                double surge, double discount, double finalFare, LocalDateTime createdAt) {
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(FareExportRow row) throws SQLException;
+    }
+}
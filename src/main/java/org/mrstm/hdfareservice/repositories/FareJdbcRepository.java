@@ -0,0 +1,112 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.mrstm.uberentityservice.models.Fare;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plain JDBC writes for the fare table, used where Hibernate's one-insert-per-entity
+ * behaviour is too slow (Fare ids are database generated, which disables Hibernate batching).
+ * Inserts rely on the unique index on booking_id and skip bookings that already have a fare,
+ * so redelivered settlements are harmless. Only the duplicate key is tolerated: unlike INSERT
+ * IGNORE, a missing booking, NULL or out-of-range value still fails the insert. Fares moved to
+ * fare_archive are outside that index, so bookings found there are skipped before inserting.
+ * created_at is stamped by the caller from the application clock, the same clock the driver
+ * earnings rollup and analytics use for "today", so a fare's day never depends on the database
+ * server's time zone.
+ */
+@Repository
+public class FareJdbcRepository {
+    private static final String INSERT_FARE = """
+            INSERT INTO fare (booking_id, car_type, distance, duration, final_fare, surge, discount, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FareJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return false when a fare for the booking already existed
+     */
+    public boolean insertIfAbsent(Fare fare, LocalDateTime createdAt) {
+        return batchInsertIfAbsent(List.of(FareRow.of(fare, null)), createdAt)[0];
+    }
+
+    /**
+     * Must run inside a REPEATABLE READ transaction (the MySQL default). Rewritten batches
+     * report SUCCESS_NO_INFO instead of per-row counts, so which rows this call inserted is
+     * read back instead: booking ids visible in the transaction's snapshot before the insert
+     * were already settled, and ids visible only afterwards are rows this transaction wrote. A
+     * fare committed by another transaction after the snapshot stays invisible to both reads.
+     *
+     * @return one flag per fare, false where the booking already had a live or archived fare (or repeats an earlier row)
+     */
+    public boolean[] batchInsertIfAbsent(List<FareRow> rows, LocalDateTime createdAt) {
+        boolean[] inserted = new boolean[rows.size()];
+        if (rows.isEmpty()) {
+            return inserted;
+        }
+        List<Long> bookingIds = rows.stream().map(FareRow::bookingId).distinct().toList();
+        Set<Long> archived = bookingIdsIn("fare_archive", bookingIds);
+        List<FareRow> unarchived = archived.isEmpty()
+                ? rows
+                : rows.stream().filter(row -> !archived.contains(row.bookingId())).toList();
+        if (unarchived.isEmpty()) {
+            return inserted;
+        }
+        Set<Long> before = bookingIdsIn("fare", bookingIds);
+        jdbcTemplate.batchUpdate(INSERT_FARE, unarchived, unarchived.size(), (ps, row) -> bind(ps, row, createdAt));
+        Set<Long> after = bookingIdsIn("fare", bookingIds);
+
+        Set<Long> claimed = new HashSet<>();
+        for (int i = 0; i < inserted.length; i++) {
+            long bookingId = rows.get(i).bookingId();
+            inserted[i] = after.contains(bookingId) && !before.contains(bookingId) && claimed.add(bookingId);
+        }
+        return inserted;
+    }
+
+    private Set<Long> bookingIdsIn(String table, List<Long> bookingIds) {
+        String placeholders = String.join(",", Collections.nCopies(bookingIds.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT booking_id FROM " + table + " WHERE booking_id IN (" + placeholders + ")", Long.class, bookingIds.toArray()));
+    }
+
+    private void bind(PreparedStatement ps, FareRow row, LocalDateTime createdAt) throws SQLException {
+        ps.setLong(1, row.bookingId());
+        ps.setString(2, row.carType());
+        ps.setDouble(3, row.distance());
+        ps.setDouble(4, row.duration());
+        ps.setDouble(5, row.finalFare());
+        ps.setDouble(6, row.surge());
+        ps.setDouble(7, row.discount());
+        // LocalDateTime is written as-is, without a shift into the connection's time zone
+        ps.setObject(8, createdAt);
+        ps.setObject(9, createdAt);
+    }
+
+    /**
+     * Everything needed to write a fare and its side rows, without holding on to the Booking
+     * entity graph; also the unit the write-behind journal stores.
+     */
+    public record FareRow(long bookingId, Long driverId, String carType, double distance, double duration,
+                          double finalFare, double surge, double discount, Long fareRateId) {
+        public static FareRow of(Fare fare, Long fareRateId) {
+            Long driverId = fare.getBooking().getDriver() == null ? null : fare.getBooking().getDriver().getId();
+            return new FareRow(fare.getBooking().getId(), driverId, fare.getCarType().name(), fare.getDistance(), fare.getDuration(),
+                    fare.getFinalFare(), fare.getSurge(), fare.getDiscount(), fareRateId);
+        }
+    }
+}
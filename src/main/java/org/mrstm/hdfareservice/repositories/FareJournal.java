@@ -0,0 +1,226 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only log of fares accepted but not yet written to MySQL. Entries are one
+ * checksummed line each, so a line torn by a crash is detected and skipped on recovery.
+ * Concurrent appenders share fsyncs (whoever syncs first covers everything written so far).
+ * The log is split into segments: {@link #seal()} closes the current segment, and once the
+ * entries in sealed segments are committed to the database {@link #release} deletes them.
+ */
+public class FareJournal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(FareJournal.class);
+    private static final String PREFIX = "fares-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object syncMonitor = new Object();
+    private final List<Path> sealed = new ArrayList<>();
+    private FileChannel channel;
+    private Path currentSegment;
+    private long nextSegment;
+    private long written;
+    private long synced;
+
+    public FareJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Reads back every entry left over from a previous run and opens a fresh segment. The old
+     * segments are treated as sealed, so they are released with the next successful flush.
+     */
+    public List<FareJdbcRepository.FareRow> recover() throws IOException {
+        List<FareJdbcRepository.FareRow> rows = new ArrayList<>();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(path -> path.getFileName().toString().startsWith(PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (Path segment : segments) {
+            nextSegment = Math.max(nextSegment, segmentNumber(segment) + 1);
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                FareJdbcRepository.FareRow row = decode(line);
+                if (row == null) {
+                    log.warn("Skipping corrupt journal entry {}:{}", segment.getFileName(), lineNumber);
+                } else {
+                    rows.add(row);
+                }
+            }
+        }
+        writeLock.lock();
+        try {
+            sealed.addAll(segments);
+            openSegment();
+        } finally {
+            writeLock.unlock();
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the entries without waiting for the disk; pass the result to {@link #sync}.
+     */
+    public long write(List<FareJdbcRepository.FareRow> rows) throws IOException {
+        StringBuilder lines = new StringBuilder(rows.size() * 96);
+        for (FareJdbcRepository.FareRow row : rows) {
+            lines.append(encode(row)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        writeLock.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return ++written;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns once everything up to {@code position} is on disk.
+     */
+    public void sync(long position) throws IOException {
+        synchronized (syncMonitor) {
+            if (synced >= position) {
+                return;
+            }
+            FileChannel target;
+            long upTo;
+            writeLock.lock();
+            try {
+                target = channel;
+                upTo = written;
+            } finally {
+                writeLock.unlock();
+            }
+            target.force(false);
+            synced = upTo;
+        }
+    }
+
+    /**
+     * Closes the current segment and returns every sealed segment not yet released.
+     */
+    public List<Path> seal() throws IOException {
+        synchronized (syncMonitor) {
+            writeLock.lock();
+            try {
+                channel.force(false);
+                channel.close();
+                synced = written;
+                sealed.add(currentSegment);
+                openSegment();
+                return List.copyOf(sealed);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    public void release(List<Path> segments) throws IOException {
+        writeLock.lock();
+        try {
+            sealed.removeAll(segments);
+        } finally {
+            writeLock.unlock();
+        }
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        currentSegment = directory.resolve(String.format(Locale.ROOT, "%s%019d%s", PREFIX, nextSegment++, SUFFIX));
+        channel = FileChannel.open(currentSegment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    static String encode(FareJdbcRepository.FareRow row) {
+        String body = String.join("|",
+                Long.toString(row.bookingId()),
+                row.driverId() == null ? "" : Long.toString(row.driverId()),
+                row.carType(),
+                Double.toString(row.distance()),
+                Double.toString(row.duration()),
+                Double.toString(row.finalFare()),
+                Double.toString(row.surge()),
+                Double.toString(row.discount()),
+                row.fareRateId() == null ? "" : Long.toString(row.fareRateId()));
+        return body + "|" + checksum(body);
+    }
+
+    static FareJdbcRepository.FareRow decode(String line) {
+        int lastSeparator = line.lastIndexOf('|');
+        if (lastSeparator < 0) {
+            return null;
+        }
+        String body = line.substring(0, lastSeparator);
+        if (!Long.toString(checksum(body)).equals(line.substring(lastSeparator + 1))) {
+            return null;
+        }
+        String[] fields = body.split("\\|", -1);
+        if (fields.length != 9) {
+            return null;
+        }
+        try {
+            return new FareJdbcRepository.FareRow(
+                    Long.parseLong(fields[0]),
+                    fields[1].isEmpty() ? null : Long.parseLong(fields[1]),
+                    fields[2],
+                    Double.parseDouble(fields[3]),
+                    Double.parseDouble(fields[4]),
+                    Double.parseDouble(fields[5]),
+                    Double.parseDouble(fields[6]),
+                    Double.parseDouble(fields[7]),
+                    fields[8].isEmpty() ? null : Long.parseLong(fields[8]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long checksum(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
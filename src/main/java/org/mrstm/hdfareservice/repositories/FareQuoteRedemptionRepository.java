@@ -0,0 +1,63 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which booking redeemed each fare quote, keyed by the SHA-256 of the token, so a
+ * quote settles at most one booking. Kept beside the fare rows like fare_rate_usage.
+ */
+@Repository
+public class FareQuoteRedemptionRepository {
+    private static final String CLAIM = """
+            INSERT INTO fare_quote_redemption (quote_hash, booking_id, redeemed_at)
+            VALUES (?, ?, NOW(6))
+            ON DUPLICATE KEY UPDATE quote_hash = quote_hash
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FareQuoteRedemptionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The first booking to claim a token keeps it; claiming it again for that booking (a
+     * redelivered settlement) succeeds, for any other booking it fails.
+     *
+     * @return the booking ids that hold their token
+     */
+    @Transactional
+    public Set<Long> claim(Map<Long, byte[]> tokenHashesByBookingId) {
+        List<Map.Entry<Long, byte[]>> entries = List.copyOf(tokenHashesByBookingId.entrySet());
+        jdbcTemplate.batchUpdate(CLAIM, entries, entries.size(), (ps, entry) -> {
+            ps.setBytes(1, entry.getValue());
+            ps.setLong(2, entry.getKey());
+        });
+
+        // a locking read, so a claim committed by another settlement after this transaction began is seen
+        Map<ByteBuffer, Long> owners = new HashMap<>();
+        String placeholders = String.join(",", Collections.nCopies(entries.size(), "?"));
+        jdbcTemplate.query("SELECT quote_hash, booking_id FROM fare_quote_redemption WHERE quote_hash IN (" + placeholders + ") FOR UPDATE",
+                (RowCallbackHandler) rs -> owners.put(ByteBuffer.wrap(rs.getBytes(1)), rs.getLong(2)),
+                entries.stream().map(Map.Entry::getValue).toArray());
+
+        Set<Long> claimed = new HashSet<>();
+        for (Map.Entry<Long, byte[]> entry : entries) {
+            if (entry.getKey().equals(owners.get(ByteBuffer.wrap(entry.getValue())))) {
+                claimed.add(entry.getKey());
+            }
+        }
+        return claimed;
+    }
+}
@@ -3,12 +3,19 @@ package org.mrstm.hdfareservice.repositories;
 import org.mrstm.uberentityservice.models.CarType;
 import org.mrstm.uberentityservice.models.FareRate;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.List;
 
 @Repository
 public interface FareRateRepository extends JpaRepository<FareRate , Long> {
-    Optional<FareRate> findByCarTypeAndActiveIsTrue(CarType carType);
+    List<FareRate> findAllByActiveIsTrue();
+
+    @Modifying
+    @Query("UPDATE FareRate r SET r.active = false WHERE r.carType = :carType AND r.active = true")
+    int deactivateActiveRates(@Param("carType") CarType carType);
 
 }
@@ -0,0 +1,40 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records which FareRate row priced each booking's fare. Kept beside the shared Fare
+ * entity so the entity module does not have to change.
+ */
+@Repository
+public class FareRateUsageRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public FareRateUsageRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void save(Long bookingId, Long fareRateId) {
+        jdbcTemplate.update("""
+                INSERT INTO fare_rate_usage (booking_id, fare_rate_id, created_at)
+                VALUES (?, ?, NOW(6))
+                ON DUPLICATE KEY UPDATE fare_rate_id = VALUES(fare_rate_id)
+                """, bookingId, fareRateId);
+    }
+
+    public void saveAll(Map<Long, Long> fareRateIdsByBookingId) {
+        List<Map.Entry<Long, Long>> entries = List.copyOf(fareRateIdsByBookingId.entrySet());
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO fare_rate_usage (booking_id, fare_rate_id, created_at)
+                VALUES (?, ?, NOW(6))
+                ON DUPLICATE KEY UPDATE fare_rate_id = VALUES(fare_rate_id)
+                """, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, entry.getKey());
+            ps.setLong(2, entry.getValue());
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package org.mrstm.hdfareservice.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows latency instead of being fixed. It keeps a slow
+ * exponentially weighted average of call latency as the no-queueing baseline and compares
+ * every call against it: while calls take no longer than {@code tolerance} times the
+ * baseline the limit grows by about its square root; when they get slower it shrinks in
+ * proportion (at most halving), so the limit settles where adding work starts queueing it.
+ * Calls that were dropped or timed out shrink the limit by {@code backoff}.
+ * Waiting uses a {@link ReentrantLock} condition, which does not pin a virtual thread's carrier.
+ */
+public class AdaptiveLimiter {
+    private static final double BASELINE_ALPHA = 0.01;
+    private static final double RECENT_ALPHA = 0.2;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoff;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private double limit;
+    private double baselineNanos;
+    private double recentNanos;
+    private int inFlight;
+    private int waiting;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoff) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    /**
+     * Takes a slot, waiting up to {@code maxWait} for one to free up; a zero wait never blocks.
+     */
+    public boolean tryAcquire(Duration maxWait) throws InterruptedException {
+        long remaining = maxWait.toNanos();
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                waiting++;
+                try {
+                    remaining = released.awaitNanos(remaining);
+                } finally {
+                    waiting--;
+                }
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a slot even if the limit is reached, for work that must not be refused.
+     */
+    public void acquireUnconditionally() {
+        lock.lock();
+        try {
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot and feeds the call's latency into the limit.
+     *
+     * @param dropped the call timed out or was rejected downstream; its latency is not a sample
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (dropped) {
+                limit = Math.max(minLimit, limit * backoff);
+            } else if (latencyNanos > 0) {
+                update(latencyNanos);
+            }
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long latencyNanos) {
+        baselineNanos = baselineNanos == 0 ? latencyNanos : baselineNanos + BASELINE_ALPHA * (latencyNanos - baselineNanos);
+        recentNanos = recentNanos == 0 ? latencyNanos : recentNanos + RECENT_ALPHA * (latencyNanos - recentNanos);
+        // do not grow on latency alone while the limit is not what is holding callers back
+        if (inFlight + 1 < limit / 2 && waiting == 0) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / latencyNanos));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether callers are queued for a slot or recent calls are slower than the tolerance allows.
+     */
+    public boolean isCongested() {
+        lock.lock();
+        try {
+            return waiting > 0 || recentNanos > tolerance * baselineNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.mrstm.hdfareservice.resilience;
+
+import java.time.Duration;
+
+/**
+ * Timeout that follows observed latency: an exponentially weighted mean and variance of
+ * recent call durations, with the timeout set to mean + k standard deviations and clamped to
+ * [min, max]. Slow upstream days stretch it (up to max) instead of failing every call; a
+ * healthy upstream keeps it tight so stragglers are cut early.
+ */
+public class AdaptiveTimeout {
+    private final double alpha;
+    private final double deviations;
+    private final long minMillis;
+    private final long maxMillis;
+
+    private volatile double meanMillis;
+    private volatile double varianceMillis;
+
+    public AdaptiveTimeout(Duration initial, Duration min, Duration max, double alpha, double deviations) {
+        this.alpha = alpha;
+        this.deviations = deviations;
+        this.minMillis = min.toMillis();
+        this.maxMillis = max.toMillis();
+        this.meanMillis = initial.toMillis();
+        this.varianceMillis = 0;
+    }
+
+    public synchronized void record(long latencyMillis) {
+        double delta = latencyMillis - meanMillis;
+        meanMillis += alpha * delta;
+        varianceMillis = (1 - alpha) * (varianceMillis + alpha * delta * delta);
+    }
+
+    public long currentMillis() {
+        long timeout = Math.round(meanMillis + deviations * Math.sqrt(varianceMillis));
+        return Math.max(minMillis, Math.min(maxMillis, timeout));
+    }
+}
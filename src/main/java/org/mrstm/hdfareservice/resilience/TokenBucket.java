@@ -0,0 +1,31 @@
+package org.mrstm.hdfareservice.resilience;
+
+/**
+ * Rate limit of {@code ratePerSecond} with bursts of up to {@code capacity}. Tokens are
+ * refilled lazily from the time since the last call, so an idle bucket costs nothing.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double capacity, double ratePerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    public synchronized boolean tryConsume() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
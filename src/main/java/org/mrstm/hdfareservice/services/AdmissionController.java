@@ -0,0 +1,186 @@
+package org.mrstm.hdfareservice.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.resilience.AdaptiveLimiter;
+import org.mrstm.hdfareservice.resilience.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Separate adaptive concurrency limits for estimates, settlements and driver analytics, which
+ * otherwise compete for the same executor, connection pool and Maps quota. Settlements are
+ * never refused: they wait for a slot and, past {@code max-wait}, run anyway. Analytics wait
+ * up to their {@code max-wait}. Estimates never wait; they are refused at once when their own
+ * limit is reached, when the calling address has used up its token bucket, or when they would
+ * take more than half their limit while settlements or analytics are congested.
+ */
+@Component
+public class AdmissionController {
+
+    public enum RequestClass {
+        ESTIMATE, SETTLEMENT, ANALYTICS;
+
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    public enum Rejection {
+        CLIENT_RATE, PRIORITY, LIMIT
+    }
+
+    private final boolean enabled;
+    private final Map<RequestClass, AdaptiveLimiter> limiters = new EnumMap<>(RequestClass.class);
+    private final Map<RequestClass, Duration> maxWaits = new EnumMap<>(RequestClass.class);
+    private final boolean clientLimitEnabled;
+    private final Cache<String, TokenBucket> clientBuckets;
+    private final double clientBurst;
+    private final double clientRate;
+    private final MeterRegistry meterRegistry;
+
+    public AdmissionController(Environment environment,
+                               MeterRegistry meterRegistry,
+                               @Value("${fare.admission.enabled:true}") boolean enabled,
+                               @Value("${fare.admission.latency-tolerance:2.0}") double tolerance,
+                               @Value("${fare.admission.backoff:0.9}") double backoff,
+                               @Value("${fare.admission.client.enabled:true}") boolean clientLimitEnabled,
+                               @Value("${fare.admission.client.burst:40}") double clientBurst,
+                               @Value("${fare.admission.client.rate:10}") double clientRate,
+                               @Value("${fare.admission.client.maximum-clients:100000}") long maximumClients) {
+        this.enabled = enabled;
+        this.clientLimitEnabled = clientLimitEnabled;
+        this.clientBurst = clientBurst;
+        this.clientRate = clientRate;
+        this.meterRegistry = meterRegistry;
+        this.clientBuckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .maximumSize(maximumClients)
+                .build();
+
+        for (RequestClass requestClass : RequestClass.values()) {
+            String prefix = "fare.admission." + requestClass.key() + ".";
+            AdaptiveLimiter limiter = new AdaptiveLimiter(
+                    environment.getProperty(prefix + "initial-limit", Integer.class, 20),
+                    environment.getProperty(prefix + "min-limit", Integer.class, 1),
+                    environment.getProperty(prefix + "max-limit", Integer.class, 200),
+                    tolerance, backoff);
+            limiters.put(requestClass, limiter);
+            maxWaits.put(requestClass, environment.getProperty(prefix + "max-wait", Duration.class, Duration.ZERO));
+            Gauge.builder("fare.admission.limit", limiter, AdaptiveLimiter::getLimit)
+                    .tag("class", requestClass.key())
+                    .register(meterRegistry);
+            Gauge.builder("fare.admission.in-flight", limiter, AdaptiveLimiter::getInFlight)
+                    .tag("class", requestClass.key())
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admits an estimate without waiting.
+     *
+     * @param clientKey the caller's network address; estimates carry no authenticated user
+     */
+    public Admission tryAdmitEstimate(String clientKey) {
+        if (clientLimitEnabled && !clientBuckets.get(clientKey, key -> new TokenBucket(clientBurst, clientRate)).tryConsume()) {
+            return rejected(RequestClass.ESTIMATE, Rejection.CLIENT_RATE);
+        }
+        AdaptiveLimiter estimates = limiters.get(RequestClass.ESTIMATE);
+        boolean prioritized = limiters.get(RequestClass.SETTLEMENT).isCongested() || limiters.get(RequestClass.ANALYTICS).isCongested();
+        if (prioritized && estimates.getInFlight() >= estimates.getLimit() / 2) {
+            return rejected(RequestClass.ESTIMATE, Rejection.PRIORITY);
+        }
+        if (!acquire(estimates, Duration.ZERO)) {
+            return rejected(RequestClass.ESTIMATE, Rejection.LIMIT);
+        }
+        return Admission.admitted(new Permit(estimates));
+    }
+
+    /**
+     * Admits a driver analytics read, waiting up to the class's max-wait.
+     */
+    public Admission tryAdmitAnalytics() {
+        AdaptiveLimiter analytics = limiters.get(RequestClass.ANALYTICS);
+        if (!acquire(analytics, maxWaits.get(RequestClass.ANALYTICS))) {
+            return rejected(RequestClass.ANALYTICS, Rejection.LIMIT);
+        }
+        return Admission.admitted(new Permit(analytics));
+    }
+
+    /**
+     * Admits a settlement, waiting up to the class's max-wait and then admitting it regardless.
+     */
+    public Permit admitSettlement() {
+        AdaptiveLimiter settlements = limiters.get(RequestClass.SETTLEMENT);
+        if (!acquire(settlements, maxWaits.get(RequestClass.SETTLEMENT))) {
+            meterRegistry.counter("fare.admission.forced", "class", RequestClass.SETTLEMENT.key()).increment();
+            settlements.acquireUnconditionally();
+        }
+        return new Permit(settlements);
+    }
+
+    private boolean acquire(AdaptiveLimiter limiter, Duration maxWait) {
+        if (!enabled) {
+            limiter.acquireUnconditionally();
+            return true;
+        }
+        try {
+            return limiter.tryAcquire(maxWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Admission rejected(RequestClass requestClass, Rejection reason) {
+        meterRegistry.counter("fare.admission.rejected", "class", requestClass.key(), "reason", reason.name().toLowerCase()).increment();
+        return new Admission(null, reason);
+    }
+
+    /**
+     * Either a held {@code permit} or the {@code rejection} that refused it.
+     */
+    public record Admission(Permit permit, Rejection rejection) {
+        static Admission admitted(Permit permit) {
+            return new Admission(permit, null);
+        }
+
+        public boolean isAdmitted() {
+            return permit != null;
+        }
+    }
+
+    /**
+     * A held slot. Release it exactly once when the work is done; later calls are ignored.
+     */
+    public static final class Permit {
+        private final AdaptiveLimiter limiter;
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AdaptiveLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        /**
+         * @param dropped the work failed in a way that says the system is overloaded (timeouts, 5xx)
+         */
+        public void release(boolean dropped) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - startedAt, dropped);
+            }
+        }
+    }
+}
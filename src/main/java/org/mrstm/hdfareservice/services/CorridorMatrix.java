@@ -0,0 +1,281 @@
+package org.mrstm.hdfareservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.apis.GoogleMapsService;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Precomputed routes between configured zones (airports, stations, business districts), one
+ * profile per zone pair and time-of-day bucket. Cells are packed into a flat long array indexed
+ * by (origin, destination, bucket), so a corridor estimate is two zone scans and two array reads.
+ * A scheduled pass spends at most {@code calls-per-hour} provider calls filling the current
+ * bucket, most-requested pairs first; a profile keeps serving its bucket on later days until it
+ * is older than {@code max-age}.
+ */
+@Component
+public class CorridorMatrix {
+    private static final Logger log = LoggerFactory.getLogger(CorridorMatrix.class);
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final long LOW_BITS = 0xffffffffL;
+    // entity-module types are built through their JSON shape, as in the benchmark fixtures
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final GoogleMapsService provider;
+    private final ExecutorService fareExecutor;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int zoneCount;
+    private final String[] zoneNames;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    private final double[] radiiKm;
+    private final ExactLocation[] centers;
+    private final String[] addresses;
+    private final int bucketMinutes;
+    private final int buckets;
+    private final long maxAgeMinutes;
+    private final int callsPerRefresh;
+
+    // two slots per cell: [distance | duration] and [durationInTraffic | loadedAt epoch minute]
+    private final AtomicLongArray cells;
+    private final AtomicIntegerArray pairHits;
+    private final AtomicInteger filledCells = new AtomicInteger();
+    private volatile int lastBucket = -1;
+    private volatile CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+    private final Counter hits;
+    private final Counter cold;
+    private final Counter outside;
+    private final Counter refreshCalls;
+    private final Counter refreshFailures;
+
+    public CorridorMatrix(@Qualifier("resilientGoogleMapsService") GoogleMapsService provider,
+                          ExecutorService fareExecutor,
+                          MeterRegistry meterRegistry,
+                          @Value("${fare.corridors.enabled:true}") boolean enabled,
+                          @Value("${fare.corridors.zones:}") List<String> zones,
+                          @Value("${fare.corridors.bucket-minutes:60}") int bucketMinutes,
+                          @Value("${fare.corridors.max-age:7d}") Duration maxAge,
+                          @Value("${fare.corridors.calls-per-hour:600}") int callsPerHour,
+                          @Value("${fare.corridors.refresh-interval:1m}") Duration refreshInterval) {
+        this.provider = provider;
+        this.fareExecutor = fareExecutor;
+        this.clock = Clock.systemDefaultZone();
+
+        List<String> specs = zones.stream().map(String::trim).filter(spec -> !spec.isEmpty()).toList();
+        this.zoneCount = specs.size();
+        this.enabled = enabled && zoneCount > 1;
+        this.zoneNames = new String[zoneCount];
+        this.latitudes = new double[zoneCount];
+        this.longitudes = new double[zoneCount];
+        this.cosLatitudes = new double[zoneCount];
+        this.radiiKm = new double[zoneCount];
+        this.centers = new ExactLocation[zoneCount];
+        this.addresses = new String[zoneCount];
+        for (int zone = 0; zone < zoneCount; zone++) {
+            String[] fields = specs.get(zone).split(":");
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Corridor zone must be name:latitude:longitude:radiusMeters, got " + specs.get(zone));
+            }
+            zoneNames[zone] = fields[0];
+            latitudes[zone] = Double.parseDouble(fields[1]);
+            longitudes[zone] = Double.parseDouble(fields[2]);
+            cosLatitudes[zone] = Math.cos(Math.toRadians(latitudes[zone]));
+            radiiKm[zone] = Double.parseDouble(fields[3]) / 1000.0;
+            centers[zone] = OBJECT_MAPPER.convertValue(Map.of("latitude", latitudes[zone], "longitude", longitudes[zone]), ExactLocation.class);
+            addresses[zone] = fields[0];
+        }
+
+        this.bucketMinutes = Math.max(1, Math.min(MINUTES_PER_DAY, bucketMinutes));
+        this.buckets = (MINUTES_PER_DAY + this.bucketMinutes - 1) / this.bucketMinutes;
+        this.maxAgeMinutes = maxAge.toMinutes();
+        this.callsPerRefresh = (int) Math.max(1, (long) callsPerHour * refreshInterval.toMillis() / Duration.ofHours(1).toMillis());
+        int pairs = this.enabled ? zoneCount * zoneCount : 0;
+        this.cells = new AtomicLongArray(pairs * buckets * 2);
+        this.pairHits = new AtomicIntegerArray(pairs);
+        if (this.enabled) {
+            log.info("Corridor matrix: {} zones, {} buckets of {} min, {} KiB, {} provider calls per refresh",
+                    zoneCount, buckets, this.bucketMinutes, cells.length() * 8L / 1024, callsPerRefresh);
+        }
+
+        this.hits = meterRegistry.counter("fare.corridors.lookups", "outcome", "hit");
+        this.cold = meterRegistry.counter("fare.corridors.lookups", "outcome", "cold");
+        this.outside = meterRegistry.counter("fare.corridors.lookups", "outcome", "outside");
+        this.refreshCalls = meterRegistry.counter("fare.corridors.refresh.calls");
+        this.refreshFailures = meterRegistry.counter("fare.corridors.refresh.failures");
+        Gauge.builder("fare.corridors.filled", filledCells, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Route between the zones containing both end points for the current time bucket, if both
+     * are inside configured zones and that profile has been loaded.
+     */
+    public Optional<DistanceDuration> lookup(ExactLocation start, ExactLocation end) {
+        if (!enabled || start == null || end == null) {
+            return Optional.empty();
+        }
+        int origin = zoneOf(start.getLatitude(), start.getLongitude());
+        int destination = origin < 0 ? -1 : zoneOf(end.getLatitude(), end.getLongitude());
+        if (destination < 0 || origin == destination) {
+            outside.increment();
+            return Optional.empty();
+        }
+
+        int pair = origin * zoneCount + destination;
+        pairHits.incrementAndGet(pair);
+        long nowMinute = epochMinute();
+        int slot = slotOf(pair, bucketOf(minuteOfDay()));
+        // loadedAt is written last, so reading it first guarantees the other slot is at least as new
+        long traffic = cells.get(slot + 1);
+        long loadedAt = traffic & LOW_BITS;
+        if (loadedAt == 0 || nowMinute - loadedAt > maxAgeMinutes) {
+            cold.increment();
+            return Optional.empty();
+        }
+        long route = cells.get(slot);
+        hits.increment();
+        return Optional.of(DistanceDuration.builder()
+                .startAddress(addresses[origin])
+                .endAddress(addresses[destination])
+                .distance(Float.intBitsToFloat((int) (route >>> 32)))
+                .duration(Float.intBitsToFloat((int) route))
+                .durationInTraffic(Float.intBitsToFloat((int) (traffic >>> 32)))
+                .build());
+    }
+
+    /**
+     * Loads the current bucket for the most-requested pairs not yet loaded during this
+     * occurrence of the bucket, up to the per-refresh share of the hourly call budget.
+     */
+    @Scheduled(fixedDelayString = "${fare.corridors.refresh-interval:1m}")
+    public void refresh() {
+        if (!enabled || !inFlight.isDone()) {
+            return;
+        }
+        int minuteOfDay = minuteOfDay();
+        int bucket = bucketOf(minuteOfDay);
+        long bucketStart = epochMinute() - minuteOfDay % bucketMinutes;
+        if (bucket != lastBucket) {
+            // popularity decays once per bucket so yesterday's rush does not crowd out today's
+            for (int pair = 0; pair < pairHits.length(); pair++) {
+                pairHits.set(pair, pairHits.get(pair) >> 1);
+            }
+            lastBucket = bucket;
+        }
+
+        // hits in the high half, pair index in the low half, so a primitive sort orders by popularity
+        long[] candidates = new long[pairHits.length()];
+        int count = 0;
+        for (int origin = 0; origin < zoneCount; origin++) {
+            for (int destination = 0; destination < zoneCount; destination++) {
+                int pair = origin * zoneCount + destination;
+                if (origin != destination && (cells.get(slotOf(pair, bucket) + 1) & LOW_BITS) < bucketStart) {
+                    candidates[count++] = ((long) pairHits.get(pair) << 32) | pair;
+                }
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(candidates, 0, count);
+
+        List<CompletableFuture<Void>> loads = new ArrayList<>(Math.min(count, callsPerRefresh));
+        for (int i = count - 1; i >= 0 && count - i <= callsPerRefresh; i--) {
+            int pair = (int) candidates[i];
+            loads.add(CompletableFuture.runAsync(() -> load(pair, bucket), fareExecutor));
+        }
+        // not joined: the scheduler thread is shared with the write-behind flush and surge passes
+        inFlight = CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new));
+    }
+
+    private void load(int pair, int bucket) {
+        int origin = pair / zoneCount;
+        int destination = pair % zoneCount;
+        DistanceDuration route;
+        refreshCalls.increment();
+        try {
+            route = provider.getDistanceAndDuration(centers[origin], centers[destination]);
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            log.debug("Could not load corridor {} -> {}: {}", zoneNames[origin], zoneNames[destination], e.getMessage());
+            return;
+        }
+        if (route.getStartAddress() != null) {
+            addresses[origin] = route.getStartAddress();
+        }
+        if (route.getEndAddress() != null) {
+            addresses[destination] = route.getEndAddress();
+        }
+
+        int slot = slotOf(pair, bucket);
+        long previous = cells.get(slot + 1);
+        cells.set(slot, ((long) Float.floatToRawIntBits((float) route.getDistance()) << 32)
+                | (Float.floatToRawIntBits((float) route.getDuration()) & LOW_BITS));
+        cells.set(slot + 1, ((long) Float.floatToRawIntBits((float) route.getDurationInTraffic()) << 32)
+                | (epochMinute() & LOW_BITS));
+        if (previous == 0) {
+            filledCells.incrementAndGet();
+        }
+    }
+
+    /**
+     * Nearest zone whose radius contains the point, or -1. Equirectangular distance is accurate
+     * to well under a metre at zone radii, and the scan is over primitive arrays only.
+     */
+    private int zoneOf(double latitude, double longitude) {
+        int best = -1;
+        double bestKm = Double.MAX_VALUE;
+        for (int zone = 0; zone < zoneCount; zone++) {
+            double dx = (longitude - longitudes[zone]) * cosLatitudes[zone] * 111.320;
+            double dy = (latitude - latitudes[zone]) * 110.574;
+            double km = Math.sqrt(dx * dx + dy * dy);
+            if (km <= radiiKm[zone] && km < bestKm) {
+                best = zone;
+                bestKm = km;
+            }
+        }
+        return best;
+    }
+
+    private int slotOf(int pair, int bucket) {
+        return (pair * buckets + bucket) * 2;
+    }
+
+    private int bucketOf(int minuteOfDay) {
+        return minuteOfDay / bucketMinutes;
+    }
+
+    private int minuteOfDay() {
+        LocalTime now = LocalTime.now(clock);
+        return now.getHour() * 60 + now.getMinute();
+    }
+
+    private long epochMinute() {
+        return clock.millis() / 60_000;
+    }
+}
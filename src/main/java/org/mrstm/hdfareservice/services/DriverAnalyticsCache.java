@@ -0,0 +1,84 @@
+package org.mrstm.hdfareservice.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mrstm.hdfareservice.dto.DriverAnalyticsDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived per-driver cache of analytics responses. Entries are grouped by driver so a new
+ * fare drops every cached range for that driver at once; other nodes rely on the TTL.
+ * Drivers invalidated within the replica's allowed lag are remembered, so their next load can
+ * read from the primary instead of re-caching totals the replica has not caught up with.
+ */
+@Component
+public class DriverAnalyticsCache {
+    private final Cache<Long, Map<Range, DriverAnalyticsDto>> cache;
+    private final Cache<Long, Boolean> recentlyInvalidated;
+
+    public DriverAnalyticsCache(@Value("${fare.analytics.cache.ttl:30s}") Duration ttl,
+                                @Value("${fare.analytics.cache.maximum-drivers:50000}") long maximumDrivers,
+                                @Value("${fare.datasource.replica.max-lag:5s}") Duration maxReplicaLag) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumDrivers)
+                .build();
+        this.recentlyInvalidated = Caffeine.newBuilder()
+                .expireAfterWrite(maxReplicaLag)
+                .maximumSize(maximumDrivers)
+                .build();
+    }
+
+    public DriverAnalyticsDto get(Long driverId, LocalDate fromDate, LocalDate toDate, Supplier<DriverAnalyticsDto> loader) {
+        Map<Range, DriverAnalyticsDto> ranges = cache.get(driverId, id -> new ConcurrentHashMap<>());
+        Range range = new Range(fromDate, toDate, LocalDate.now());
+        DriverAnalyticsDto cached = ranges.get(range);
+        if (cached != null) {
+            return cached;
+        }
+        DriverAnalyticsDto loaded = loader.get();
+        ranges.put(range, loaded);
+        return loaded;
+    }
+
+    /**
+     * Evicts after the current transaction commits, so a concurrent reader cannot re-cache pre-commit totals.
+     */
+    public void invalidate(Long driverId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(driverId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(driverId);
+            }
+        });
+    }
+
+    /**
+     * Whether the driver's fares changed recently enough that a replica within its allowed lag may not have them yet.
+     */
+    public boolean isRecentlyInvalidated(Long driverId) {
+        return recentlyInvalidated.getIfPresent(driverId) != null;
+    }
+
+    private void evict(Long driverId) {
+        recentlyInvalidated.put(driverId, Boolean.TRUE);
+        cache.invalidate(driverId);
+    }
+
+    // month-to-date depends on the current day, so it is part of the key
+    private record Range(LocalDate fromDate, LocalDate toDate, LocalDate today) {
+    }
+}
@@ -0,0 +1,116 @@
+package org.mrstm.hdfareservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.repositories.FareArchiveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Moves fares older than {@code retention-months} whole months out of the live table into
+ * the monthly-partitioned fare_archive, so the live table and its indexes stay sized to the
+ * recent window that settlement and exports mostly touch. Each run first gives every month
+ * it is about to archive its own partition, then moves rows in short batches until nothing
+ * is left or {@code max-run} has passed; the next run picks up where it stopped.
+ */
+@Component
+public class FareArchiver {
+    private static final Logger log = LoggerFactory.getLogger(FareArchiver.class);
+
+    private final FareArchiveRepository fareArchiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService fareExecutor;
+    private final boolean enabled;
+    private final int retentionMonths;
+    private final int batchSize;
+    private final Duration maxRun;
+    private final Counter moved;
+    private volatile CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+    public FareArchiver(FareArchiveRepository fareArchiveRepository,
+                        TransactionTemplate transactionTemplate,
+                        ExecutorService fareExecutor,
+                        MeterRegistry meterRegistry,
+                        @Value("${fare.archive.enabled:true}") boolean enabled,
+                        @Value("${fare.archive.retention-months:6}") int retentionMonths,
+                        @Value("${fare.archive.batch-size:5000}") int batchSize,
+                        @Value("${fare.archive.max-run:30m}") Duration maxRun) {
+        this.fareArchiveRepository = fareArchiveRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.fareExecutor = fareExecutor;
+        this.enabled = enabled;
+        this.retentionMonths = Math.max(1, retentionMonths);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRun = maxRun;
+        this.moved = meterRegistry.counter("fare.archive.moved");
+    }
+
+    /**
+     * Runs on the fare executor; the scheduler thread is shared with the write-behind flush.
+     */
+    @Scheduled(cron = "${fare.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        if (!enabled || !inFlight.isDone()) {
+            return;
+        }
+        inFlight = CompletableFuture.runAsync(this::archiveOnce, fareExecutor)
+                .exceptionally(e -> {
+                    log.error("Fare archival failed", e);
+                    return null;
+                });
+    }
+
+    void archiveOnce() {
+        LocalDateTime cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths).atStartOfDay();
+        fareArchiveRepository.oldestLiveBefore(cutoff).ifPresent(oldest -> addPartitions(YearMonth.from(oldest), YearMonth.from(cutoff)));
+
+        long deadline = System.nanoTime() + maxRun.toNanos();
+        long total = 0;
+        int batch;
+        do {
+            Integer count = transactionTemplate.execute(status -> fareArchiveRepository.moveBatch(cutoff, batchSize));
+            batch = count == null ? 0 : count;
+            total += batch;
+            moved.increment(batch);
+        } while (batch > 0 && System.nanoTime() < deadline);
+
+        if (total > 0) {
+            log.info("Archived {} fares created before {}{}", total, cutoff,
+                    batch > 0 ? "; stopped at max-run, the rest moves on the next run" : "");
+        }
+    }
+
+    /**
+     * Adds a partition for every month in [{@code oldest}, {@code cutoff}) not yet covered. A
+     * table that was never partitioned (e.g. not MySQL) is left as it is.
+     */
+    private void addPartitions(YearMonth oldest, YearMonth cutoff) {
+        NavigableSet<YearMonth> existing = fareArchiveRepository.partitionMonths();
+        if (existing.isEmpty() && !fareArchiveRepository.isPartitioned()) {
+            return;
+        }
+        YearMonth month = existing.isEmpty() ? oldest : existing.last().plusMonths(1);
+        List<YearMonth> missing = new ArrayList<>();
+        for (; month.isBefore(cutoff); month = month.plusMonths(1)) {
+            missing.add(month);
+        }
+        if (!missing.isEmpty()) {
+            fareArchiveRepository.addPartitions(missing);
+            log.info("Added fare_archive partitions {} to {}", missing.get(0), missing.get(missing.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.mrstm.hdfareservice.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mrstm.hdfareservice.repositories.FareExportRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Writes a driver's (or every driver's) fares for a date range straight to the response
+ * stream, one keyset page at a time, flushing after each page so the client receives a
+ * chunked response while memory stays bounded by the page size.
+ */
+@Service
+public class FareExportService {
+    private static final String CSV_HEADER = "id,booking_id,driver_id,car_type,distance,duration,surge,discount,final_fare,created_at\n";
+
+    private final FareExportRepository fareExportRepository;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+
+    public FareExportService(FareExportRepository fareExportRepository,
+                             ObjectMapper objectMapper,
+                             @Value("${fare.export.page-size:1000}") int pageSize) {
+        this.fareExportRepository = fareExportRepository;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+    }
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * @param driverId null exports every driver
+     */
+    public void export(Long driverId, LocalDate fromDate, LocalDate toDate, Format format, OutputStream out) throws IOException {
+        LocalDateTime from = fromDate.atStartOfDay();
+        LocalDateTime to = toDate.plusDays(1).atStartOfDay();
+        if (format == Format.CSV) {
+            exportCsv(driverId, from, to, out);
+        } else {
+            exportNdjson(driverId, from, to, out);
+        }
+    }
+
+    private void exportNdjson(Long driverId, LocalDateTime from, LocalDateTime to, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            FareExportRepository.Cursor cursor = FareExportRepository.Cursor.start(from);
+            while (cursor != null) {
+                cursor = fareExportRepository.readPage(driverId, from, to, cursor, pageSize, row -> {
+                    try {
+                        objectMapper.writeValue(generator, row);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new ExportAbortedException(e);
+                    }
+                });
+                generator.flush();
+            }
+        } catch (ExportAbortedException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void exportCsv(Long driverId, LocalDateTime from, LocalDateTime to, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        StringBuilder line = new StringBuilder(128);
+        try {
+            FareExportRepository.Cursor cursor = FareExportRepository.Cursor.start(from);
+            while (cursor != null) {
+                cursor = fareExportRepository.readPage(driverId, from, to, cursor, pageSize, row -> {
+                    line.setLength(0);
+                    line.append(row.id()).append(',')
+                            .append(row.bookingId()).append(',')
+                            .append(row.driverId() == null ? "" : row.driverId()).append(',')
+                            .append(row.carType()).append(',')
+                            .append(row.distance()).append(',')
+                            .append(row.duration()).append(',')
+                            .append(row.surge()).append(',')
+                            .append(row.discount()).append(',')
+                            .append(row.finalFare()).append(',')
+                            .append(row.createdAt()).append('\n');
+                    try {
+                        writer.append(line);
+                    } catch (IOException e) {
+                        throw new ExportAbortedException(e);
+                    }
+                });
+                writer.flush();
+            }
+        } catch (ExportAbortedException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    // carries a client disconnect out of the JDBC row callback
+    private static final class ExportAbortedException extends RuntimeException {
+        private ExportAbortedException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.mrstm.hdfareservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mrstm.uberentityservice.models.CarType;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Timers for each stage of the fare pipeline. Every meter is registered up front (per-CarType
+ * ones in an EnumMap), so recording on the hot path is an array lookup plus the timer update,
+ * never a registry lookup or tag allocation.
+ */
+@Component
+public class FareMetrics {
+    private final Map<CarType, Timer> rateLookup;
+    private final Map<CarType, Timer> strategy;
+    private final Map<CarType, Timer> estimate;
+    private final Timer estimateMapsLookup;
+    private final Timer settlementMapsLookup;
+    private final Timer fareSave;
+    private final Timer fareBatchSave;
+    private final Timer analyticsLoad;
+    private final Timer analyticsRebuild;
+
+    public FareMetrics(MeterRegistry meterRegistry) {
+        this.rateLookup = perCarType(meterRegistry, "fare.rate.lookup", "Active fare rate lookup");
+        this.strategy = perCarType(meterRegistry, "fare.strategy.calculate", "Fare formula evaluation");
+        this.estimate = perCarType(meterRegistry, "fare.estimate", "Estimate pricing after the route is known");
+        this.estimateMapsLookup = timer(meterRegistry, "fare.maps.lookup", "Route lookup as seen by pricing", "path", "estimate");
+        this.settlementMapsLookup = timer(meterRegistry, "fare.maps.lookup", "Route lookup as seen by pricing", "path", "settlement");
+        this.fareSave = timer(meterRegistry, "fare.save", "Fare insert with usage and rollup updates", "mode", "single");
+        this.fareBatchSave = timer(meterRegistry, "fare.save", "Fare insert with usage and rollup updates", "mode", "batch");
+        this.analyticsLoad = timer(meterRegistry, "fare.analytics.query", "Driver analytics queries", "query", "daily_rollup");
+        this.analyticsRebuild = timer(meterRegistry, "fare.analytics.query", "Driver analytics queries", "query", "rebuild");
+    }
+
+    public Timer rateLookup(CarType carType) {
+        return rateLookup.get(carType);
+    }
+
+    public Timer strategy(CarType carType) {
+        return strategy.get(carType);
+    }
+
+    public Timer estimate(CarType carType) {
+        return estimate.get(carType);
+    }
+
+    public Timer estimateMapsLookup() {
+        return estimateMapsLookup;
+    }
+
+    public Timer settlementMapsLookup() {
+        return settlementMapsLookup;
+    }
+
+    public Timer fareSave() {
+        return fareSave;
+    }
+
+    public Timer fareBatchSave() {
+        return fareBatchSave;
+    }
+
+    public Timer analyticsLoad() {
+        return analyticsLoad;
+    }
+
+    public Timer analyticsRebuild() {
+        return analyticsRebuild;
+    }
+
+    private static Map<CarType, Timer> perCarType(MeterRegistry meterRegistry, String name, String description) {
+        Map<CarType, Timer> timers = new EnumMap<>(CarType.class);
+        for (CarType carType : CarType.values()) {
+            timers.put(carType, timer(meterRegistry, name, description, "car_type", carType.name()));
+        }
+        return Collections.unmodifiableMap(timers);
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String name, String description, String tagKey, String tagValue) {
+        return Timer.builder(name)
+                .description(description)
+                .tag(tagKey, tagValue)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
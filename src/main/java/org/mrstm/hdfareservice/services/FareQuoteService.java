@@ -0,0 +1,220 @@
+package org.mrstm.hdfareservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.apis.HaversineDistanceService;
+import org.mrstm.hdfareservice.repositories.FareQuoteRedemptionRepository;
+import org.mrstm.uberentityservice.models.Booking;
+import org.mrstm.uberentityservice.models.CarType;
+import org.mrstm.uberentityservice.models.ExactLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Issues and redeems signed fare quotes. A token carries everything needed to write the fare
+ * (rider, rate version, route, distance, duration, surge, discount, fare and expiry) and is
+ * signed with HMAC-SHA256, so settlement can trust it without calling the maps provider again
+ * as long as the booking belongs to the quoted rider and its car type and end points still
+ * match. Each token settles one booking only: redemptions are recorded by token hash. The TTL
+ * only has to outlast booking, pickup and the trip itself, since quotes are redeemed when the
+ * trip completes. All instances must share {@code fare.quote.secret}; startup fails without it
+ * unless {@code fare.quote.single-node} is set, in which case a random per-instance key is used.
+ */
+@Component
+public class FareQuoteService {
+    private static final Logger log = LoggerFactory.getLogger(FareQuoteService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String VERSION = "2";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final FareQuoteRedemptionRepository fareQuoteRedemptionRepository;
+    private final Mac prototype;
+    private final Duration ttl;
+    private final double locationToleranceKm;
+    private final Counter accepted;
+    private final Counter invalid;
+    private final Counter expired;
+    private final Counter mismatched;
+    private final Counter replayed;
+
+    public FareQuoteService(MeterRegistry meterRegistry,
+                            FareQuoteRedemptionRepository fareQuoteRedemptionRepository,
+                            @Value("${fare.quote.secret:}") String secret,
+                            @Value("${fare.quote.single-node:false}") boolean singleNode,
+                            @Value("${fare.quote.ttl:4h}") Duration ttl,
+                            @Value("${fare.quote.location-tolerance-meters:250}") double locationToleranceMeters) throws GeneralSecurityException {
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            // another instance could not verify our quotes, and riders would silently lose them
+            if (!singleNode) {
+                throw new IllegalStateException("fare.quote.secret must be set to the key shared by all instances "
+                        + "(or fare.quote.single-node=true for a single instance)");
+            }
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            log.warn("fare.quote.secret is not set; quotes issued by this instance can only be redeemed by it");
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.fareQuoteRedemptionRepository = fareQuoteRedemptionRepository;
+        this.prototype = Mac.getInstance(ALGORITHM);
+        this.prototype.init(new SecretKeySpec(key, ALGORITHM));
+        this.ttl = ttl;
+        this.locationToleranceKm = locationToleranceMeters / 1000.0;
+
+        this.accepted = meterRegistry.counter("fare.quotes.redeemed", "outcome", "accepted");
+        this.invalid = meterRegistry.counter("fare.quotes.redeemed", "outcome", "invalid");
+        this.expired = meterRegistry.counter("fare.quotes.redeemed", "outcome", "expired");
+        this.mismatched = meterRegistry.counter("fare.quotes.redeemed", "outcome", "mismatched");
+        this.replayed = meterRegistry.counter("fare.quotes.redeemed", "outcome", "replayed");
+    }
+
+    public String issue(long riderId, CarType carType, long fareRateId, ExactLocation start, ExactLocation end,
+                        double distance, double duration, double surge, double discount, double fare) {
+        String payload = String.join("|", VERSION, Long.toString(riderId), carType.name(), Long.toString(fareRateId),
+                Double.toString(start.getLatitude()), Double.toString(start.getLongitude()),
+                Double.toString(end.getLatitude()), Double.toString(end.getLongitude()),
+                Double.toString(distance), Double.toString(duration), Double.toString(surge),
+                Double.toString(discount), Double.toString(fare),
+                Long.toString(Instant.now().plus(ttl).getEpochSecond()));
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * Returns the quote if the token is authentic, unexpired and was issued to this rider for the
+     * booking's car type and end points; otherwise the booking has to be priced the regular way.
+     * A verified quote is only used once {@link #redeem} has claimed it for the booking.
+     */
+    public Optional<FareQuote> verify(String token, Long riderId, Booking booking) {
+        FareQuote quote = parse(token);
+        if (quote == null) {
+            invalid.increment();
+            return Optional.empty();
+        }
+        if (Instant.now().getEpochSecond() > quote.expiresAt()) {
+            expired.increment();
+            return Optional.empty();
+        }
+        if (riderId == null || quote.riderId() != riderId
+                || quote.carType() != booking.getCarType()
+                || !near(quote.start(), booking.getStartLocation())
+                || !near(quote.end(), booking.getEndLocation())) {
+            mismatched.increment();
+            return Optional.empty();
+        }
+        return Optional.of(quote);
+    }
+
+    /**
+     * Claims verified quotes for their bookings and returns the ones claimed. A token belongs to
+     * the first booking that redeems it, which may redeem it again when its settlement is
+     * redelivered; any other booking presenting it is priced the regular way.
+     */
+    public Map<Long, FareQuote> redeem(Map<Long, FareQuote> quotesByBookingId) {
+        if (quotesByBookingId.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, byte[]> tokenHashes = new LinkedHashMap<>();
+        quotesByBookingId.forEach((bookingId, quote) -> tokenHashes.put(bookingId, quote.tokenHash()));
+        Set<Long> claimed = fareQuoteRedemptionRepository.claim(tokenHashes);
+
+        Map<Long, FareQuote> redeemed = new LinkedHashMap<>();
+        quotesByBookingId.forEach((bookingId, quote) -> {
+            if (claimed.contains(bookingId)) {
+                accepted.increment();
+                redeemed.put(bookingId, quote);
+            } else {
+                replayed.increment();
+            }
+        });
+        return redeemed;
+    }
+
+    private FareQuote parse(String token) {
+        try {
+            int dot = token.indexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+            byte[] payloadBytes = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payloadBytes))) {
+                return null;
+            }
+
+            String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split("\\|");
+            if (fields.length != 14 || !VERSION.equals(fields[0])) {
+                return null;
+            }
+            return new FareQuote(
+                    Long.parseLong(fields[1]),
+                    CarType.valueOf(fields[2]),
+                    Long.parseLong(fields[3]),
+                    new double[]{Double.parseDouble(fields[4]), Double.parseDouble(fields[5])},
+                    new double[]{Double.parseDouble(fields[6]), Double.parseDouble(fields[7])},
+                    Double.parseDouble(fields[8]),
+                    Double.parseDouble(fields[9]),
+                    Double.parseDouble(fields[10]),
+                    Double.parseDouble(fields[11]),
+                    Double.parseDouble(fields[12]),
+                    Long.parseLong(fields[13]),
+                    sha256(token));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean near(double[] quoted, ExactLocation actual) {
+        if (actual == null) {
+            return false;
+        }
+        return HaversineDistanceService.greatCircleKm(quoted[0], quoted[1], actual.getLatitude(), actual.getLongitude()) <= locationToleranceKm;
+    }
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            // Mac instances are not thread-safe; cloning the initialised prototype skips key setup
+            Mac mac = (Mac) prototype.clone();
+            return mac.doFinal(payload);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HMAC provider does not support cloning", e);
+        }
+    }
+
+    /**
+     * @param start     {latitude, longitude} of the quoted pickup
+     * @param end       {latitude, longitude} of the quoted drop
+     * @param tokenHash SHA-256 of the token, the key its redemption is recorded under
+     */
+    public record FareQuote(long riderId, CarType carType, long fareRateId, double[] start, double[] end,
+                            double distance, double duration, double surge, double discount, double fare,
+                            long expiresAt, byte[] tokenHash) {
+    }
+}
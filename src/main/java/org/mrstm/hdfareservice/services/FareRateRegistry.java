@@ -0,0 +1,143 @@
+package org.mrstm.hdfareservice.services;
+
+import org.mrstm.hdfareservice.exceptions.NotFoundException;
+import org.mrstm.hdfareservice.repositories.FareRateRepository;
+import org.mrstm.uberentityservice.models.CarType;
+import org.mrstm.uberentityservice.models.FareRate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory view of the active FareRate per CarType. The snapshot is immutable and swapped
+ * atomically, so pricing reads never touch the database. It is reloaded after /fare/add-rate
+ * commits, when another node announces a change on the rate-change topic, and on a fixed
+ * schedule as a safety net.
+ */
+@Component
+public class FareRateRegistry {
+    private static final Logger log = LoggerFactory.getLogger(FareRateRegistry.class);
+
+    private final FareRateRepository fareRateRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String rateChangeTopic;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(0, Collections.emptyMap()));
+
+    public FareRateRegistry(FareRateRepository fareRateRepository,
+                            KafkaTemplate<String, Object> kafkaTemplate,
+                            @Value("${fare.rates.change-topic:fare-rate-changed}") String rateChangeTopic) {
+        this.fareRateRepository = fareRateRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.rateChangeTopic = rateChangeTopic;
+    }
+
+    public FareRate getActiveRate(CarType carType) {
+        FareRate fareRate = snapshot.get().rates().get(carType);
+        if (fareRate == null) {
+            throw new NotFoundException("Fare rate not found for car type: " + carType);
+        }
+        return fareRate;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${fare.rates.refresh-interval:60s}", initialDelayString = "${fare.rates.refresh-interval:60s}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        List<FareRate> activeRates = fareRateRepository.findAllByActiveIsTrue();
+        Snapshot current = snapshot.get();
+        Map<CarType, FareRate> rates = new EnumMap<>(CarType.class);
+        for (FareRate fareRate : activeRates) {
+            FareRate existing = rates.get(fareRate.getCarType());
+            // if two rows are still flagged active, the newest one wins
+            if (existing == null || existing.getId() < fareRate.getId()) {
+                rates.put(fareRate.getCarType(), fareRate);
+            }
+        }
+        // a change always inserts a newer row, so an older id means this read came from a lagging replica
+        current.rates().forEach((carType, known) -> {
+            FareRate loaded = rates.get(carType);
+            if (loaded != null && loaded.getId() < known.getId()) {
+                rates.put(carType, known);
+            }
+        });
+
+        if (!sameRates(current.rates(), rates)) {
+            Snapshot next = new Snapshot(current.generation() + 1, Collections.unmodifiableMap(rates));
+            snapshot.set(next);
+            log.info("Loaded fare rate snapshot generation {} for {}", next.generation(), rates.keySet());
+        }
+    }
+
+    /**
+     * Reloads this node once the surrounding transaction commits and tells the other nodes to do the same.
+     */
+    public void onRatesChanged(CarType carType) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh();
+            announce(carType);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh();
+                announce(carType);
+            }
+        });
+    }
+
+    @KafkaListener(topics = "${fare.rates.change-topic:fare-rate-changed}", groupId = "fare-rates-${random.uuid}")
+    public void onRateChangeNotification(String carType) {
+        log.debug("Fare rate change announced for {}", carType);
+        refresh();
+    }
+
+    private void announce(CarType carType) {
+        try {
+            kafkaTemplate.send(rateChangeTopic, carType.name(), carType.name());
+        } catch (RuntimeException e) {
+            // other nodes still pick the change up on their next scheduled refresh
+            log.warn("Could not announce fare rate change for {}", carType, e);
+        }
+    }
+
+    private boolean sameRates(Map<CarType, FareRate> current, Map<CarType, FareRate> next) {
+        if (current.size() != next.size()) {
+            return false;
+        }
+        for (Map.Entry<CarType, FareRate> entry : next.entrySet()) {
+            FareRate existing = current.get(entry.getKey());
+            if (existing == null || !Objects.equals(existing.getId(), entry.getValue().getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param generation increases every time this node swaps in a different set of rates
+     * @param rates      active rate per car type; each rate's id is the rate version recorded against fares
+     */
+    public record Snapshot(long generation, Map<CarType, FareRate> rates) {
+    }
+}
@@ -1,17 +1,28 @@
 package org.mrstm.hdfareservice.services;
 
+import org.mrstm.hdfareservice.dto.BookingCompletedEvent;
+import org.mrstm.hdfareservice.dto.BulkEstimateRequestDto;
+import org.mrstm.hdfareservice.dto.BulkEstimateResponseDto;
+import org.mrstm.hdfareservice.dto.DriverAnalyticsDto;
+import org.mrstm.hdfareservice.dto.QuotedFareDto;
+import org.mrstm.hdfareservice.dto.SettlementResult;
 import org.mrstm.uberentityservice.dto.fare.*;
-import org.mrstm.uberentityservice.models.CarType;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public interface FareService {
     void calculateAndSaveFare(Long bookingId);
-    CalculatedFareDTO estimateFare(EstimateFareRequestDto estimateFareRequestDto, double discount);
+    SettlementResult settleCompletedBookings(Map<Long, BookingCompletedEvent> eventsByBookingId);
+    CompletableFuture<QuotedFareDto> estimateFareAsync(EstimateFareRequestDto estimateFareRequestDto, Long riderId, double discount);
+    CompletableFuture<BulkEstimateResponseDto> estimateFares(BulkEstimateRequestDto bulkEstimateRequestDto, Long riderId, double discount);
     String addNewFareRate(FareRateDto fareRateDto);
     AnalyticsResponseDto getEarningsOfDriver(Long driverId , LocalDate fromDate , LocalDate toDate);
     List<DailyEarningsDto> getDailyEarningsBetween(Long driverId, LocalDate fromDate, LocalDate toDate);
+    DriverAnalyticsDto getDriverAnalytics(Long driverId, LocalDate fromDate, LocalDate toDate);
+    int rebuildEarningsRollup();
 }
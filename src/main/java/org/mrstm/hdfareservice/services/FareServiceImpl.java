@@ -1,36 +1,121 @@
 package org.mrstm.hdfareservice.services;
 
-import jakarta.ws.rs.BadRequestException;
-import jakarta.ws.rs.NotFoundException;
+import io.micrometer.core.instrument.Timer;
 import org.mrstm.hdfareservice.apis.GoogleMapsService;
+import org.mrstm.hdfareservice.apis.RouteLookup;
+import org.mrstm.hdfareservice.dto.BookingCompletedEvent;
+import org.mrstm.hdfareservice.dto.BulkEstimateRequestDto;
+import org.mrstm.hdfareservice.dto.BulkEstimateResponseDto;
+import org.mrstm.hdfareservice.dto.DriverAnalyticsDto;
+import org.mrstm.hdfareservice.dto.QuotedFareDto;
+import org.mrstm.hdfareservice.dto.SettlementResult;
 import org.mrstm.hdfareservice.exceptions.AlreadyExistException;
+import org.mrstm.hdfareservice.exceptions.BadRequestException;
+import org.mrstm.hdfareservice.exceptions.NotFoundException;
 import org.mrstm.hdfareservice.repositories.BookingRepository;
+import org.mrstm.hdfareservice.repositories.DriverEarningsRollupRepository;
+import org.mrstm.hdfareservice.repositories.FareJdbcRepository;
 import org.mrstm.hdfareservice.repositories.FareRateRepository;
+import org.mrstm.hdfareservice.repositories.FareRateUsageRepository;
 import org.mrstm.hdfareservice.repositories.FareRepository;
-import org.mrstm.hdfareservice.strategies.FareStrategy;
 import org.mrstm.uberentityservice.dto.fare.*;
 import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
 import org.mrstm.uberentityservice.models.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class FareServiceImpl implements FareService {
     private final FareRateRepository fareRateRepository;
-    private final FareStrategy fareStrategy;
     private final BookingRepository bookingRepository;
     private final FareRepository fareRepository;
-    private final GoogleMapsService googleMapsService;
+    private final GoogleMapsService settlementMapsService;
+    private final GoogleMapsService estimateMapsService;
+    private final FareRateRegistry fareRateRegistry;
+    private final SurgeEngine surgeEngine;
+    private final FareQuoteService fareQuoteService;
+    private final RoutePricer routePricer;
+    private final CorridorMatrix corridorMatrix;
+    private final FareMetrics fareMetrics;
+    private final FareRateUsageRepository fareRateUsageRepository;
+    private final FareJdbcRepository fareJdbcRepository;
+    private final DriverEarningsRollupRepository driverEarningsRollupRepository;
+    private final DriverAnalyticsCache driverAnalyticsCache;
+    private final FareWriteBehind fareWriteBehind;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ExecutorService fareExecutor;
+    private final Duration mapsTimeout;
+    private final int maxBulkDestinations;
+    private final double defaultDiscount;
+    private final int rebuildWindowDays;
 
-    public FareServiceImpl(FareRateRepository fareRateRepository, FareStrategy fareStrategy, BookingRepository bookingRepository, FareRepository fareRepository, GoogleMapsService googleMapsService) {
+    public FareServiceImpl(FareRateRepository fareRateRepository, BookingRepository bookingRepository, FareRepository fareRepository,
+                           @Qualifier("cachingGoogleMapsService") GoogleMapsService settlementMapsService,
+                           @Qualifier("estimateMapsService") GoogleMapsService estimateMapsService,
+                           FareRateRegistry fareRateRegistry,
+                           SurgeEngine surgeEngine,
+                           FareQuoteService fareQuoteService,
+                           RoutePricer routePricer,
+                           CorridorMatrix corridorMatrix,
+                           FareMetrics fareMetrics,
+                           FareRateUsageRepository fareRateUsageRepository,
+                           FareJdbcRepository fareJdbcRepository,
+                           DriverEarningsRollupRepository driverEarningsRollupRepository,
+                           DriverAnalyticsCache driverAnalyticsCache,
+                           FareWriteBehind fareWriteBehind,
+                           TransactionTemplate transactionTemplate,
+                           ExecutorService fareExecutor,
+                           @Value("${fare.estimate.maps-timeout:3s}") Duration mapsTimeout,
+                           @Value("${fare.estimate.bulk.max-destinations:25}") int maxBulkDestinations,
+                           @Value("${fare.pricing.default-discount:10}") double defaultDiscount,
+                           @Value("${fare.analytics.rebuild.window-days:7}") int rebuildWindowDays) {
         this.fareRateRepository = fareRateRepository;
-        this.fareStrategy = fareStrategy;
         this.bookingRepository = bookingRepository;
         this.fareRepository = fareRepository;
-        this.googleMapsService = googleMapsService;
+        this.settlementMapsService = settlementMapsService;
+        this.estimateMapsService = estimateMapsService;
+        this.fareRateRegistry = fareRateRegistry;
+        this.surgeEngine = surgeEngine;
+        this.fareQuoteService = fareQuoteService;
+        this.routePricer = routePricer;
+        this.corridorMatrix = corridorMatrix;
+        this.fareMetrics = fareMetrics;
+        this.fareRateUsageRepository = fareRateUsageRepository;
+        this.fareJdbcRepository = fareJdbcRepository;
+        this.driverEarningsRollupRepository = driverEarningsRollupRepository;
+        this.driverAnalyticsCache = driverAnalyticsCache;
+        this.fareWriteBehind = fareWriteBehind;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.fareExecutor = fareExecutor;
+        this.mapsTimeout = mapsTimeout;
+        this.maxBulkDestinations = maxBulkDestinations;
+        this.defaultDiscount = defaultDiscount;
+        this.rebuildWindowDays = Math.max(1, rebuildWindowDays);
     }
 
     @Override
@@ -38,137 +123,389 @@ public class FareServiceImpl implements FareService {
     public void calculateAndSaveFare(Long bookingId) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new NotFoundException("Booking not found."));
-        if (fareRepository.existsByBookingId(bookingId)) {
+        PricedFare pricedFare = priceCompletedBooking(booking);
+
+        // the unique index on booking_id decides whether the fare already exists
+        if (!insertFare(pricedFare)) {
             throw new AlreadyExistException("Fare already calculated for this booking.");
         }
+    }
 
+    // settlement never prices from the local estimate: a provider failure fails the booking so it is retried
+    private PricedFare priceCompletedBooking(Booking booking) {
         if (booking.getBookingStatus() != BookingStatus.COMPLETED) {
             throw new BadRequestException("Cannot calculate fare until trip is completed.");
         }
 
-        CarType carType = booking.getCarType();
         ExactLocation start = booking.getStartLocation();
         ExactLocation end = booking.getEndLocation();
         if (start == null || end == null) {
             throw new BadRequestException("Missing start or end location for booking.");
         }
 
-        DistanceDuration distanceDuration = googleMapsService.getDistanceAndDuration(start, end);
+        DistanceDuration distanceDuration = fareMetrics.settlementMapsLookup().record(() -> settlementMapsService.getDistanceAndDuration(start, end));
+        return buildFare(booking, distanceDuration, activeRate(booking.getCarType()));
+    }
+
+    private boolean insertFare(PricedFare pricedFare) {
+        Timer.Sample sample = Timer.start();
+        try {
+            return saveFare(pricedFare);
+        } finally {
+            sample.stop(fareMetrics.fareSave());
+        }
+    }
+
+    private boolean saveFare(PricedFare pricedFare) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!fareJdbcRepository.insertIfAbsent(pricedFare.fare(), now)) {
+            return false;
+        }
+        fareRateUsageRepository.save(pricedFare.fare().getBooking().getId(), pricedFare.fareRateId());
+        surgeEngine.recordCompletion(pricedFare.fare().getBooking().getStartLocation());
+        Long driverId = driverIdOf(pricedFare.fare().getBooking());
+        if (driverId != null) {
+            driverEarningsRollupRepository.increment(driverId, now.toLocalDate(), pricedFare.fare().getFinalFare());
+            driverAnalyticsCache.invalidate(driverId);
+        }
+        return true;
+    }
+
+    @Override
+    public SettlementResult settleCompletedBookings(Map<Long, BookingCompletedEvent> eventsByBookingId) {
+        SettlementResult result = new SettlementResult();
+        Set<Long> requested = new LinkedHashSet<>(eventsByBookingId.keySet());
+        Map<Long, Booking> bookings = bookingRepository.findAllByIdIn(requested).stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        Set<Long> alreadySettled = new HashSet<>(fareRepository.findBookingIdsIn(requested));
+
+        Map<Long, FareQuoteService.FareQuote> quotes = new LinkedHashMap<>();
+        List<Long> unquoted = new ArrayList<>();
+        for (Long bookingId : requested) {
+            Booking booking = bookings.get(bookingId);
+            if (booking == null) {
+                result.failed(bookingId, "Booking not found.", false);
+            } else if (alreadySettled.contains(bookingId)) {
+                result.duplicate(bookingId);
+            } else if (booking.getBookingStatus() != BookingStatus.COMPLETED) {
+                result.failed(bookingId, "Cannot calculate fare until trip is completed.", true);
+            } else if (booking.getStartLocation() == null || booking.getEndLocation() == null) {
+                result.failed(bookingId, "Missing start or end location for booking.", false);
+            } else {
+                BookingCompletedEvent event = eventsByBookingId.get(bookingId);
+                Optional<FareQuoteService.FareQuote> quote = event == null || event.getQuoteToken() == null
+                        ? Optional.empty()
+                        : fareQuoteService.verify(event.getQuoteToken(), event.getRiderId(), booking);
+                if (quote.isPresent()) {
+                    quotes.put(bookingId, quote.get());
+                } else {
+                    unquoted.add(bookingId);
+                }
+            }
+        }
+
+        // a quote already redeemed by another booking is priced as if there were none
+        List<PricedFare> pricedFares = new ArrayList<>();
+        Map<Long, FareQuoteService.FareQuote> redeemed = fareQuoteService.redeem(quotes);
+        quotes.forEach((bookingId, quote) -> {
+            if (redeemed.containsKey(bookingId)) {
+                pricedFares.add(buildFare(bookings.get(bookingId), quote));
+            } else {
+                unquoted.add(bookingId);
+            }
+        });
+
+        Map<Long, CompletableFuture<DistanceDuration>> lookups = new LinkedHashMap<>();
+        for (Long bookingId : unquoted) {
+            Booking booking = bookings.get(bookingId);
+            lookups.put(bookingId, CompletableFuture
+                    .supplyAsync(() -> fareMetrics.settlementMapsLookup().record(() -> settlementMapsService.getDistanceAndDuration(booking.getStartLocation(), booking.getEndLocation())), fareExecutor)
+                    .orTimeout(mapsTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        lookups.forEach((bookingId, lookup) -> {
+            try {
+                Booking booking = bookings.get(bookingId);
+                pricedFares.add(buildFare(booking, lookup.join(), activeRate(booking.getCarType())));
+            } catch (RuntimeException e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                result.failed(bookingId, String.valueOf(cause.getMessage()), true);
+            }
+        });
+
+        if (pricedFares.isEmpty()) {
+            return result;
+        }
+        List<FareJdbcRepository.FareRow> rows = pricedFares.stream()
+                .map(pricedFare -> FareJdbcRepository.FareRow.of(pricedFare.fare(), pricedFare.fareRateId()))
+                .toList();
+        if (fareWriteBehind.isEnabled()) {
+            // durable in the journal; a booking settled concurrently elsewhere is skipped at flush time
+            fareWriteBehind.submit(rows);
+            for (PricedFare pricedFare : pricedFares) {
+                result.settled(pricedFare.fare().getBooking().getId());
+                surgeEngine.recordCompletion(pricedFare.fare().getBooking().getStartLocation());
+            }
+            return result;
+        }
+
+        // a concurrent delivery may have settled some bookings since the existence check; the insert skips those
+        boolean[] inserted = fareWriteBehind.write(rows);
+        for (int i = 0; i < pricedFares.size(); i++) {
+            Booking booking = pricedFares.get(i).fare().getBooking();
+            if (inserted[i]) {
+                result.settled(booking.getId());
+                surgeEngine.recordCompletion(booking.getStartLocation());
+            } else {
+                result.duplicate(booking.getId());
+            }
+        }
+        return result;
+    }
+
+    private Long driverIdOf(Booking booking) {
+        return booking.getDriver() == null ? null : booking.getDriver().getId();
+    }
+
+    private PricedFare buildFare(Booking booking, DistanceDuration distanceDuration, FareRate fareRate) {
         double distanceKm = distanceDuration.getDistance();
         double durationMin = Math.round(distanceDuration.getDuration());
-        double surge = getSurge(distanceDuration);
-
-        FareRate fareRate = fareRateRepository.findByCarTypeAndActiveIsTrue(carType)
-                .orElseThrow(() -> new NotFoundException("Fare rate not found for car type: " + carType));
+        double surge = surgeEngine.surgeFor(booking.getStartLocation(), distanceDuration);
 
-        double finalFare = fareStrategy.calculate(fareRate, distanceKm, durationMin, surge, 10);
+        double finalFare = routePricer.calculate(fareRate, distanceKm, durationMin, surge, defaultDiscount);
 
         Fare fare = Fare.builder()
                 .booking(booking)
-                .carType(carType)
+                .carType(booking.getCarType())
                 .distance(distanceKm)
                 .duration(durationMin)
                 .finalFare(finalFare)
                 .surge(surge)
-                .discount(10) //discount is set to 10%
+                .discount(defaultDiscount)
                 .build();
+        return new PricedFare(fare, fareRate.getId());
+    }
 
-        fareRepository.save(fare);
+    // the quote was signed by us, so its numbers are written as-is
+    private PricedFare buildFare(Booking booking, FareQuoteService.FareQuote quote) {
+        Fare fare = Fare.builder()
+                .booking(booking)
+                .carType(booking.getCarType())
+                .distance(quote.distance())
+                .duration(quote.duration())
+                .finalFare(quote.fare())
+                .surge(quote.surge())
+                .discount(quote.discount())
+                .build();
+        return new PricedFare(fare, quote.fareRateId());
+    }
 
 
-//        return CalculatedFareDTO.builder()
-//                .fare(finalFare)
-//                .distance(distanceKm)
-//                .duration(durationMin)
-//                .build();
-    }
+    @Override
+    public CompletableFuture<QuotedFareDto> estimateFareAsync(EstimateFareRequestDto estimateFareRequestDto, Long riderId, double discount) {
+        Timer.Sample sample = Timer.start();
+        FareRate fareRate = activeRate(parseCarType(estimateFareRequestDto.getCarType()));
+        surgeEngine.recordDemand(estimateFareRequestDto.getStartLocation());
 
+        return estimateRoute(estimateFareRequestDto.getStartLocation(), estimateFareRequestDto.getEndLocation())
+                .thenApply(route -> routePricer.priceEstimate(estimateFareRequestDto, riderId, route, fareRate, discount))
+                .whenComplete((quoted, error) -> sample.stop(fareMetrics.estimate(fareRate.getCarType())));
+    }
 
     @Override
-    public CalculatedFareDTO estimateFare(EstimateFareRequestDto estimateFareRequestDto, double discount) {
-        DistanceDuration distanceDuration = googleMapsService.getDistanceAndDuration(estimateFareRequestDto.getStartLocation(), estimateFareRequestDto.getEndLocation());
-        double distance = distanceDuration.getDistance();
-        double duration = Math.round(distanceDuration.getDurationInTraffic());
-        double surge = getSurge(distanceDuration);
-        String startAddress = distanceDuration.getStartAddress();
-        String endAddress = distanceDuration.getEndAddress();
+    public CompletableFuture<BulkEstimateResponseDto> estimateFares(BulkEstimateRequestDto bulkEstimateRequestDto, Long riderId, double discount) {
+        ExactLocation start = bulkEstimateRequestDto.getStartLocation();
+        List<ExactLocation> endLocations = bulkEstimateRequestDto.getEndLocations();
+        if (start == null || endLocations == null || endLocations.isEmpty()) {
+            throw new BadRequestException("Start location and at least one end location are required.");
+        }
+        if (endLocations.size() > maxBulkDestinations) {
+            throw new BadRequestException("At most " + maxBulkDestinations + " destinations can be estimated at once.");
+        }
 
+        Map<CarType, FareRate> fareRates = new EnumMap<>(CarType.class);
+        if (bulkEstimateRequestDto.getCarTypes() == null || bulkEstimateRequestDto.getCarTypes().isEmpty()) {
+            fareRates.putAll(fareRateRegistry.getSnapshot().rates());
+        } else {
+            for (String carType : bulkEstimateRequestDto.getCarTypes()) {
+                CarType parsed = parseCarType(carType);
+                fareRates.put(parsed, activeRate(parsed));
+            }
+        }
 
-        if(estimateFareRequestDto.getCarType().isEmpty()){
-            throw new IllegalArgumentException("Invalid car type provided.");
+        surgeEngine.recordDemand(start);
+
+        // one lookup per distinct destination; repeated destinations share it
+        Map<String, CompletableFuture<RouteLookup>> lookups = new LinkedHashMap<>();
+        for (ExactLocation end : endLocations) {
+            lookups.computeIfAbsent(end.getLatitude() + "," + end.getLongitude(), key -> estimateRoute(start, end));
         }
-        FareRate fareRate = fareRateRepository.findByCarTypeAndActiveIsTrue(CarType.valueOf(estimateFareRequestDto.getCarType()))
-                .orElseThrow(() -> new NotFoundException("Fare rate not found for this car type."));
-        double finalFare = fareStrategy.calculate(fareRate, distance, duration, surge, discount);
 
+        return CompletableFuture.allOf(lookups.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            String startAddress = null;
+            List<BulkEstimateResponseDto.DestinationEstimate> destinations = new ArrayList<>(endLocations.size());
+            for (ExactLocation end : endLocations) {
+                RouteLookup route = lookups.get(end.getLatitude() + "," + end.getLongitude()).join();
+                DistanceDuration distanceDuration = route.distanceDuration();
+                startAddress = distanceDuration.getStartAddress();
+                double distance = distanceDuration.getDistance();
+                double duration = Math.round(distanceDuration.getDurationInTraffic());
+                double surge = surgeEngine.surgeFor(start, distanceDuration);
 
-        return CalculatedFareDTO.builder()
-                .startAddress(startAddress)
-                .endAddress(endAddress)
-                .duration(duration)
-                .distance(distance)
-                .fare(finalFare)
-                .build();
+                Map<String, Double> fares = new LinkedHashMap<>();
+                Map<String, String> quoteTokens = new LinkedHashMap<>();
+                fareRates.forEach((carType, fareRate) -> {
+                    double fare = routePricer.calculate(fareRate, distance, duration, surge, discount);
+                    fares.put(carType.name(), fare);
+                    if (route.providerBacked() && riderId != null) {
+                        quoteTokens.put(carType.name(), fareQuoteService.issue(riderId, carType, fareRate.getId(), start, end, distance, duration, surge, discount, fare));
+                    }
+                });
+
+                destinations.add(BulkEstimateResponseDto.DestinationEstimate.builder()
+                        .endAddress(distanceDuration.getEndAddress())
+                        .distance(distance)
+                        .duration(duration)
+                        .fares(fares)
+                        .quoteTokens(quoteTokens)
+                        .build());
+            }
+            return BulkEstimateResponseDto.builder()
+                    .startAddress(startAddress)
+                    .destinations(destinations)
+                    .build();
+        });
+    }
+
+    /**
+     * Corridor routes are answered in place from the precomputed matrix; everything else goes to
+     * the maps chain on the fare executor, bounded by the estimate timeout. Corridor profiles are
+     * zone-to-zone, so like the local engine's answers they are approximate.
+     */
+    private CompletableFuture<RouteLookup> estimateRoute(ExactLocation start, ExactLocation end) {
+        Optional<DistanceDuration> corridor = corridorMatrix.lookup(start, end);
+        if (corridor.isPresent()) {
+            return CompletableFuture.completedFuture(RouteLookup.approximate(corridor.get()));
+        }
+        return CompletableFuture
+                .supplyAsync(() -> fareMetrics.estimateMapsLookup().record(() -> estimateMapsService.lookupRoute(start, end)), fareExecutor)
+                .orTimeout(mapsTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // hot path: timed with nanoTime deltas rather than record(Supplier), which allocates a capturing lambda and boxes the result
+    private FareRate activeRate(CarType carType) {
+        long start = System.nanoTime();
+        try {
+            return fareRateRegistry.getActiveRate(carType);
+        } finally {
+            fareMetrics.rateLookup(carType).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private CarType parseCarType(String carType) {
+        if (carType == null || carType.isEmpty()) {
+            throw new IllegalArgumentException("Invalid car type provided.");
+        }
+        return CarType.valueOf(carType);
     }
 
     @Override
+    @Transactional
     public String addNewFareRate(FareRateDto fareRateDto) {
+        CarType carType = CarType.valueOf(fareRateDto.getCarType().toUpperCase());
+        fareRateRepository.deactivateActiveRates(carType);
         FareRate fareRate = FareRate.builder()
                 .minFare(fareRateDto.getMinFare())
                 .perKmRate(fareRateDto.getPerKmRate())
                 .perMinRate(fareRateDto.getPerMinRate())
                 .baseFare(fareRateDto.getBaseFare())
-                .carType(CarType.valueOf(fareRateDto.getCarType().toUpperCase()))
+                .carType(carType)
                 .active(true)
                 .build();
         fareRateRepository.save(fareRate);
+        fareRateRegistry.onRatesChanged(carType);
         return "SUCCESS";
     }
 
     @Override
     public AnalyticsResponseDto getEarningsOfDriver(Long driverId, LocalDate fromDate, LocalDate toDate) {
-        double totalEarnings = fareRepository.getTotalEarningsBetween(driverId, fromDate, toDate);
-        double thisMonthEarnings = fareRepository.getThisMonthEarnings(driverId);
-        double pendingEarnings = 0;
-        double withdrawnEarnings = totalEarnings; //baad me
+        DriverAnalyticsDto analytics = getDriverAnalytics(driverId, fromDate, toDate);
 
         return AnalyticsResponseDto.builder()
-                .totalEarnings(totalEarnings)
-                .thisMonthEarnings(thisMonthEarnings)
-                .pendingEarnings(pendingEarnings)
-                .withdrawnEarnings(withdrawnEarnings)
+                .totalEarnings(analytics.getTotalEarnings())
+                .thisMonthEarnings(analytics.getThisMonthEarnings())
+                .pendingEarnings(analytics.getPendingEarnings())
+                .withdrawnEarnings(analytics.getWithdrawnEarnings())
                 .build();
     }
 
     @Override
     public List<DailyEarningsDto> getDailyEarningsBetween(Long driverId, LocalDate fromDate, LocalDate toDate) {
-        return fareRepository.getDailyEarningsBetween(driverId, fromDate, toDate);
+        return getDriverAnalytics(driverId, fromDate, toDate).getDailyEarnings();
     }
 
+    @Override
+    public DriverAnalyticsDto getDriverAnalytics(Long driverId, LocalDate fromDate, LocalDate toDate) {
+        return driverAnalyticsCache.get(driverId, fromDate, toDate, () -> {
+            // a driver settled within the replica's allowed lag is read from the primary
+            TransactionTemplate template = driverAnalyticsCache.isRecentlyInvalidated(driverId) ? transactionTemplate : readOnlyTransactionTemplate;
+            return fareMetrics.analyticsLoad().record(() -> template.execute(status -> loadDriverAnalytics(driverId, fromDate, toDate)));
+        });
+    }
 
-    private double getSurge(DistanceDuration distanceDuration) {
-        double durationMin = distanceDuration.getDuration();
-        double durationInTraffic = distanceDuration.getDurationInTraffic();
+    // one rollup scan covering both the requested range and month-to-date
+    private DriverAnalyticsDto loadDriverAnalytics(Long driverId, LocalDate fromDate, LocalDate toDate) {
+        LocalDate today = LocalDate.now();
+        LocalDate monthStart = today.withDayOfMonth(1);
+        LocalDate scanFrom = fromDate.isBefore(monthStart) ? fromDate : monthStart;
+        LocalDate scanTo = toDate.isAfter(today) ? toDate : today;
 
-        if (durationMin <= 0) return 1.0;
+        double totalEarnings = 0;
+        double thisMonthEarnings = 0;
+        List<DailyEarningsDto> dailyEarnings = new ArrayList<>();
+        for (DriverEarningsRollupRepository.DailyEarning day : driverEarningsRollupRepository.getDailyEarningsBetween(driverId, scanFrom, scanTo)) {
+            if (!day.date().isBefore(fromDate) && !day.date().isAfter(toDate)) {
+                totalEarnings += day.total();
+                dailyEarnings.add(new DailyEarningsDto(day.date(), day.total()));
+            }
+            if (!day.date().isBefore(monthStart) && !day.date().isAfter(today)) {
+                thisMonthEarnings += day.total();
+            }
+        }
+        double pendingEarnings = 0;
+        double withdrawnEarnings = totalEarnings; //baad me
 
-        double trafficRatio = durationInTraffic / durationMin;
-        double surge;
+        return DriverAnalyticsDto.builder()
+                .totalEarnings(totalEarnings)
+                .thisMonthEarnings(thisMonthEarnings)
+                .pendingEarnings(pendingEarnings)
+                .withdrawnEarnings(withdrawnEarnings)
+                .dailyEarnings(List.copyOf(dailyEarnings))
+                .build();
+    }
 
-        if (trafficRatio <= 1.0) {
-            surge = 1.0;
-        } else if (trafficRatio <= 1.2) {
-            surge = 1.0 + (trafficRatio - 1.0) * 1.0;
-        } else if (trafficRatio <= 1.5) {
-            surge = 1.2 + (trafficRatio - 1.2) * 1.0;
-        } else if (trafficRatio <= 2.0) {
-            surge = 1.5 + (trafficRatio - 1.5) * 1.0;
-        } else {
-            surge = 2.5;
+    // one short transaction per window, so a rebuild never holds locks across the whole fare history
+    @Override
+    public int rebuildEarningsRollup() {
+        Timer.Sample sample = Timer.start();
+        try {
+            DriverEarningsRollupRepository.DateSpan span = driverEarningsRollupRepository.historySpan();
+            if (span == null) {
+                return 0;
+            }
+            int rows = 0;
+            for (LocalDate from = span.first(); !from.isAfter(span.last()); from = from.plusDays(rebuildWindowDays)) {
+                LocalDate windowFrom = from;
+                LocalDate windowTo = from.plusDays(rebuildWindowDays);
+                Integer rebuilt = transactionTemplate.execute(status -> driverEarningsRollupRepository.rebuild(windowFrom, windowTo));
+                rows += rebuilt == null ? 0 : rebuilt;
+            }
+            return rows;
+        } finally {
+            sample.stop(fareMetrics.analyticsRebuild());
         }
-
-        surge = Math.round(surge * 100.0) / 100.0;
-        return surge;
     }
 
+    private record PricedFare(Fare fare, Long fareRateId) {
+    }
 }
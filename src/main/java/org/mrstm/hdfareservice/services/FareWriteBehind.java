@@ -0,0 +1,251 @@
+package org.mrstm.hdfareservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.repositories.DriverEarningsRollupRepository;
+import org.mrstm.hdfareservice.repositories.FareJdbcRepository;
+import org.mrstm.hdfareservice.repositories.FareJournal;
+import org.mrstm.hdfareservice.repositories.FareRateUsageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes fares with their usage and rollup rows in JDBC batches. With write-behind enabled,
+ * {@link #submit} only appends to the local {@link FareJournal} (fsync shared between
+ * concurrent callers) and returns; the buffer is flushed to MySQL when it reaches
+ * {@code batch-size} or every {@code flush-interval}, and journal segments are deleted only
+ * after their rows are committed. Entries left in the journal by an unclean shutdown are
+ * replayed on startup; the fare insert skips bookings that already have a fare and the side
+ * rows are only written for rows it actually inserted (read back in the same transaction, see
+ * {@link FareJdbcRepository#batchInsertIfAbsent}), so replaying an already-committed entry is harmless.
+ * <p>
+ * Write-behind acknowledges before it commits: settlement reports the bookings settled, and
+ * the consumer commits their Kafka offsets, once the rows are in the journal. Until the next
+ * flush those fares are not in MySQL, and if the journal is lost with them (an ephemeral
+ * container disk, a volume not remounted on restart) Kafka will not redeliver them. It is
+ * therefore off by default, and enabling it requires {@code journal-dir} to be set explicitly,
+ * to a persistent volume that the same instance gets back after a restart.
+ */
+@Component
+public class FareWriteBehind implements InitializingBean, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(FareWriteBehind.class);
+
+    private final FareJdbcRepository fareJdbcRepository;
+    private final FareRateUsageRepository fareRateUsageRepository;
+    private final DriverEarningsRollupRepository driverEarningsRollupRepository;
+    private final DriverAnalyticsCache driverAnalyticsCache;
+    private final TransactionTemplate transactionTemplate;
+    private final FareMetrics fareMetrics;
+    private final ExecutorService fareExecutor;
+    private final boolean enabled;
+    private final Path journalDirectory;
+    private final int batchSize;
+
+    private final ConcurrentLinkedQueue<FareJdbcRepository.FareRow> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // appenders share the read side so journal write + enqueue is atomic with respect to seal + drain
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter flushedRows;
+    private final Counter skippedDuplicates;
+    private final Counter flushFailures;
+    private FareJournal journal;
+
+    public FareWriteBehind(FareJdbcRepository fareJdbcRepository,
+                           FareRateUsageRepository fareRateUsageRepository,
+                           DriverEarningsRollupRepository driverEarningsRollupRepository,
+                           DriverAnalyticsCache driverAnalyticsCache,
+                           TransactionTemplate transactionTemplate,
+                           FareMetrics fareMetrics,
+                           ExecutorService fareExecutor,
+                           MeterRegistry meterRegistry,
+                           @Value("${fare.write-behind.enabled:false}") boolean enabled,
+                           @Value("${fare.write-behind.journal-dir:}") String journalDirectory,
+                           @Value("${fare.write-behind.batch-size:500}") int batchSize) {
+        this.fareJdbcRepository = fareJdbcRepository;
+        this.fareRateUsageRepository = fareRateUsageRepository;
+        this.driverEarningsRollupRepository = driverEarningsRollupRepository;
+        this.driverAnalyticsCache = driverAnalyticsCache;
+        this.transactionTemplate = transactionTemplate;
+        this.fareMetrics = fareMetrics;
+        this.fareExecutor = fareExecutor;
+        this.enabled = enabled;
+        if (enabled && (journalDirectory == null || journalDirectory.isBlank())) {
+            throw new IllegalStateException("fare.write-behind.journal-dir must be set to a persistent volume when write-behind is enabled: "
+                    + "settled bookings are acknowledged to Kafka before their fares are committed");
+        }
+        this.journalDirectory = enabled ? Path.of(journalDirectory) : null;
+        this.batchSize = Math.max(1, batchSize);
+
+        this.flushedRows = meterRegistry.counter("fare.write-behind.flushed");
+        this.skippedDuplicates = meterRegistry.counter("fare.write-behind.duplicates");
+        this.flushFailures = meterRegistry.counter("fare.write-behind.failures");
+        Gauge.builder("fare.write-behind.pending", pendingCount, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = new FareJournal(journalDirectory);
+        List<FareJdbcRepository.FareRow> recovered = journal.recover();
+        if (!recovered.isEmpty()) {
+            log.info("Replaying {} journaled fares from {}", recovered.size(), journalDirectory);
+            pending.addAll(recovered);
+            pendingCount.addAndGet(recovered.size());
+        }
+    }
+
+    /**
+     * Returns once the rows are durable in the local journal; they reach MySQL with a later flush.
+     */
+    public void submit(List<FareJdbcRepository.FareRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long position;
+        journalLock.readLock().lock();
+        try {
+            position = journal.write(rows);
+            pending.addAll(rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal fares", e);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+        try {
+            journal.sync(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync fare journal", e);
+        }
+
+        if (pendingCount.addAndGet(rows.size()) >= batchSize) {
+            fareExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Writes the rows straight away in one transaction.
+     *
+     * @return one flag per row, false where the booking already had a fare
+     */
+    public boolean[] write(List<FareJdbcRepository.FareRow> rows) {
+        return fareMetrics.fareBatchSave().record(() -> transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            boolean[] inserted = fareJdbcRepository.batchInsertIfAbsent(rows, now);
+            Map<Long, Long> fareRateIds = new LinkedHashMap<>();
+            List<DriverEarningsRollupRepository.DriverEarning> earnings = new ArrayList<>();
+            for (int i = 0; i < inserted.length; i++) {
+                if (!inserted[i]) {
+                    continue;
+                }
+                FareJdbcRepository.FareRow row = rows.get(i);
+                if (row.fareRateId() != null) {
+                    fareRateIds.put(row.bookingId(), row.fareRateId());
+                }
+                if (row.driverId() != null) {
+                    earnings.add(new DriverEarningsRollupRepository.DriverEarning(row.driverId(), row.finalFare()));
+                }
+            }
+            fareRateUsageRepository.saveAll(fareRateIds);
+            driverEarningsRollupRepository.batchIncrement(now.toLocalDate(), earnings);
+            earnings.forEach(earning -> driverAnalyticsCache.invalidate(earning.driverId()));
+            return inserted;
+        }));
+    }
+
+    @Scheduled(fixedDelayString = "${fare.write-behind.flush-interval:50ms}")
+    public void flush() {
+        if (!enabled || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Path> segments;
+            List<FareJdbcRepository.FareRow> rows = new ArrayList<>();
+            journalLock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                segments = journal.seal();
+                FareJdbcRepository.FareRow row;
+                while ((row = pending.poll()) != null) {
+                    rows.add(row);
+                }
+            } finally {
+                journalLock.writeLock().unlock();
+            }
+            pendingCount.addAndGet(-rows.size());
+
+            int written = 0;
+            try {
+                for (; written < rows.size(); written += batchSize) {
+                    List<FareJdbcRepository.FareRow> chunk = rows.subList(written, Math.min(rows.size(), written + batchSize));
+                    boolean[] inserted = write(chunk);
+                    int insertedCount = 0;
+                    for (boolean flag : inserted) {
+                        if (flag) {
+                            insertedCount++;
+                        }
+                    }
+                    flushedRows.increment(insertedCount);
+                    skippedDuplicates.increment(chunk.size() - insertedCount);
+                }
+            } catch (RuntimeException e) {
+                // the journal segments are kept, so the remaining rows survive a crash before the retry
+                List<FareJdbcRepository.FareRow> remaining = rows.subList(written, rows.size());
+                pending.addAll(remaining);
+                pendingCount.addAndGet(remaining.size());
+                flushFailures.increment();
+                log.warn("Fare flush failed, {} rows re-queued", remaining.size(), e);
+                return;
+            }
+            journal.release(segments);
+        } catch (IOException e) {
+            log.error("Fare journal maintenance failed", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flush();
+            journal.close();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.mrstm.hdfareservice.services;
+
+import org.mrstm.hdfareservice.apis.RouteLookup;
+import org.mrstm.hdfareservice.dto.QuotedFareDto;
+import org.mrstm.hdfareservice.strategies.FareStrategy;
+import org.mrstm.uberentityservice.dto.fare.CalculatedFareDTO;
+import org.mrstm.uberentityservice.dto.fare.EstimateFareRequestDto;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.FareRate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices a trip once its route is known: surge for the pickup, the fare formula and, for
+ * estimates, the quote token binding exactly that surge and fare. Everything before it (rate
+ * lookup, demand recording, the route itself) stays with the caller.
+ */
+@Component
+public class RoutePricer {
+    private final FareStrategy fareStrategy;
+    private final SurgeEngine surgeEngine;
+    private final FareQuoteService fareQuoteService;
+    private final FareMetrics fareMetrics;
+
+    public RoutePricer(FareStrategy fareStrategy, SurgeEngine surgeEngine, FareQuoteService fareQuoteService, FareMetrics fareMetrics) {
+        this.fareStrategy = fareStrategy;
+        this.surgeEngine = surgeEngine;
+        this.fareQuoteService = fareQuoteService;
+        this.fareMetrics = fareMetrics;
+    }
+
+    // only provider routes get a quote token, bound to the rider; settlement prices the rest from the real route
+    public QuotedFareDto priceEstimate(EstimateFareRequestDto request, Long riderId, RouteLookup route, FareRate fareRate, double discount) {
+        DistanceDuration distanceDuration = route.distanceDuration();
+        double distance = distanceDuration.getDistance();
+        double duration = Math.round(distanceDuration.getDurationInTraffic());
+        double surge = surgeEngine.surgeFor(request.getStartLocation(), distanceDuration);
+        double finalFare = calculate(fareRate, distance, duration, surge, discount);
+
+        CalculatedFareDTO estimate = CalculatedFareDTO.builder()
+                .startAddress(distanceDuration.getStartAddress())
+                .endAddress(distanceDuration.getEndAddress())
+                .duration(duration)
+                .distance(distance)
+                .fare(finalFare)
+                .build();
+        return QuotedFareDto.builder()
+                .estimate(estimate)
+                .quoteToken(route.providerBacked() && riderId != null
+                        ? fareQuoteService.issue(riderId, fareRate.getCarType(), fareRate.getId(), request.getStartLocation(), request.getEndLocation(),
+                                distance, duration, surge, discount, finalFare)
+                        : null)
+                .build();
+    }
+
+    // hot path: timed with nanoTime deltas rather than record(Supplier), which allocates a capturing lambda and boxes the result
+    public double calculate(FareRate fareRate, double distance, double duration, double surge, double discount) {
+        long start = System.nanoTime();
+        try {
+            return fareStrategy.calculate(fareRate, distance, duration, surge, discount);
+        } finally {
+            fareMetrics.strategy(fareRate.getCarType()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
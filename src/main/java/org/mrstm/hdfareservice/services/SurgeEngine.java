@@ -0,0 +1,223 @@
+package org.mrstm.hdfareservice.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mrstm.hdfareservice.utils.GeoHash;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Demand surge per geohash cell. Estimate requests count as demand in lock-free sliding
+ * windows, and a scheduled pass turns each cell's demand into a smoothed multiplier and
+ * publishes an immutable map, so pricing only does a hash lookup. With
+ * {@code fare.surge.mode=traffic} the old per-trip traffic-ratio surge is used instead.
+ * <p>
+ * The counters are per instance and not shared: each pod sees only the estimates routed to
+ * it, so {@code baseline-demand} and {@code min-demand} are per-instance figures and scale
+ * down as replicas are added. Settled bookings are only seen by the pod whose Kafka consumer
+ * settled them, so weighting demand by served supply is off by default; enable
+ * {@code fare.surge.supply-weighting} only where one instance serves both estimates and
+ * settlement.
+ */
+@Component
+public class SurgeEngine {
+    private final boolean demandMode;
+    private final int cellPrecision;
+    private final long bucketMillis;
+    private final int buckets;
+    private final double baselineRatio;
+    private final double sensitivity;
+    private final double maxMultiplier;
+    private final long minDemand;
+    private final double smoothing;
+    private final boolean supplyWeighting;
+    private final double baselineDemand;
+    private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+    private volatile Map<String, Double> multipliers = Collections.emptyMap();
+
+    public SurgeEngine(MeterRegistry meterRegistry,
+                       @Value("${fare.surge.mode:demand}") String mode,
+                       @Value("${fare.surge.cell-precision:5}") int cellPrecision,
+                       @Value("${fare.surge.window:5m}") Duration window,
+                       @Value("${fare.surge.buckets:30}") int buckets,
+                       @Value("${fare.surge.baseline-ratio:3.0}") double baselineRatio,
+                       @Value("${fare.surge.sensitivity:0.5}") double sensitivity,
+                       @Value("${fare.surge.max-multiplier:2.5}") double maxMultiplier,
+                       @Value("${fare.surge.min-demand:20}") long minDemand,
+                       @Value("${fare.surge.smoothing:0.3}") double smoothing,
+                       @Value("${fare.surge.supply-weighting:false}") boolean supplyWeighting,
+                       @Value("${fare.surge.baseline-demand:60}") double baselineDemand) {
+        this.demandMode = !"traffic".equalsIgnoreCase(mode);
+        this.cellPrecision = cellPrecision;
+        this.buckets = Math.max(2, buckets);
+        this.bucketMillis = Math.max(1, window.toMillis() / this.buckets);
+        this.baselineRatio = baselineRatio;
+        this.sensitivity = sensitivity;
+        this.maxMultiplier = maxMultiplier;
+        this.minDemand = minDemand;
+        this.smoothing = smoothing;
+        this.supplyWeighting = supplyWeighting;
+        this.baselineDemand = Math.max(1.0, baselineDemand);
+
+        Gauge.builder("fare.surge.cells", cells, Map::size).register(meterRegistry);
+        Gauge.builder("fare.surge.active.cells", this, engine -> engine.multipliers.size()).register(meterRegistry);
+    }
+
+    /**
+     * Surge to price a trip starting at {@code start}; {@code distanceDuration} is only read in traffic mode.
+     */
+    public double surgeFor(ExactLocation start, DistanceDuration distanceDuration) {
+        if (!demandMode) {
+            return trafficSurge(distanceDuration);
+        }
+        return getMultiplier(start);
+    }
+
+    public double getMultiplier(ExactLocation location) {
+        if (location == null) {
+            return 1.0;
+        }
+        return multipliers.getOrDefault(cellOf(location), 1.0);
+    }
+
+    public void recordDemand(ExactLocation location) {
+        if (demandMode && location != null) {
+            cell(location).demand.increment(currentBucket());
+        }
+    }
+
+    public void recordCompletion(ExactLocation location) {
+        if (demandMode && supplyWeighting && location != null) {
+            cell(location).supply.increment(currentBucket());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fare.surge.recompute-interval:15s}")
+    public void recompute() {
+        if (!demandMode) {
+            return;
+        }
+        long bucket = currentBucket();
+        Map<String, Double> current = multipliers;
+        Map<String, Double> next = new HashMap<>();
+
+        cells.forEach((cellId, cell) -> {
+            long demand = cell.demand.sum(bucket);
+            long supply = cell.supply.sum(bucket);
+
+            double target = 1.0;
+            if (demand >= minDemand) {
+                double pressure = supplyWeighting
+                        ? demand / ((supply + 1) * baselineRatio)
+                        : demand / baselineDemand;
+                target = Math.min(maxMultiplier, 1.0 + sensitivity * Math.max(0.0, pressure - 1.0));
+            }
+            double previous = current.getOrDefault(cellId, 1.0);
+            double smoothed = previous + smoothing * (target - previous);
+            double rounded = Math.round(smoothed * 100.0) / 100.0;
+
+            if (rounded > 1.0) {
+                next.put(cellId, rounded);
+            } else if (demand == 0 && supply == 0) {
+                // idle and back at 1.0; recordDemand recreates it on the next request
+                cells.remove(cellId, cell);
+            }
+        });
+        multipliers = Collections.unmodifiableMap(next);
+    }
+
+    /**
+     * Per-trip surge from how much slower the route is in traffic than without: 1.0 up to no
+     * delay, rising with the ratio up to 2.0 at twice as slow, and 2.5 beyond that.
+     */
+    private static double trafficSurge(DistanceDuration distanceDuration) {
+        double durationMin = distanceDuration.getDuration();
+        double durationInTraffic = distanceDuration.getDurationInTraffic();
+
+        if (durationMin <= 0) return 1.0;
+
+        double trafficRatio = durationInTraffic / durationMin;
+        double surge;
+
+        if (trafficRatio <= 1.0) {
+            surge = 1.0;
+        } else if (trafficRatio <= 1.2) {
+            surge = 1.0 + (trafficRatio - 1.0) * 1.0;
+        } else if (trafficRatio <= 1.5) {
+            surge = 1.2 + (trafficRatio - 1.2) * 1.0;
+        } else if (trafficRatio <= 2.0) {
+            surge = 1.5 + (trafficRatio - 1.5) * 1.0;
+        } else {
+            surge = 2.5;
+        }
+
+        surge = Math.round(surge * 100.0) / 100.0;
+        return surge;
+    }
+
+    private Cell cell(ExactLocation location) {
+        return cells.computeIfAbsent(cellOf(location), key -> new Cell(buckets));
+    }
+
+    private String cellOf(ExactLocation location) {
+        return GeoHash.encode(location.getLatitude(), location.getLongitude(), cellPrecision);
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / bucketMillis;
+    }
+
+    private static final class Cell {
+        private final WindowCounter demand;
+        private final WindowCounter supply;
+
+        private Cell(int buckets) {
+            this.demand = new WindowCounter(buckets);
+            this.supply = new WindowCounter(buckets);
+        }
+    }
+
+    /**
+     * Ring of per-bucket counts tagged with the bucket they belong to; a slot is reset when
+     * the ring wraps onto it. An increment racing with that reset can be lost, which only
+     * makes the window marginally undercount.
+     */
+    private static final class WindowCounter {
+        private final AtomicLongArray counts;
+        private final AtomicLongArray owners;
+
+        private WindowCounter(int buckets) {
+            this.counts = new AtomicLongArray(buckets);
+            this.owners = new AtomicLongArray(buckets);
+        }
+
+        void increment(long bucket) {
+            int slot = (int) (bucket % counts.length());
+            long owner = owners.get(slot);
+            if (owner != bucket && owners.compareAndSet(slot, owner, bucket)) {
+                counts.set(slot, 0);
+            }
+            counts.incrementAndGet(slot);
+        }
+
+        long sum(long bucket) {
+            long total = 0;
+            for (int slot = 0; slot < counts.length(); slot++) {
+                if (bucket - owners.get(slot) < counts.length()) {
+                    total += counts.get(slot);
+                }
+            }
+            return total;
+        }
+    }
+}
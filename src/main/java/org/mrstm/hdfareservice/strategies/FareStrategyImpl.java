@@ -5,19 +5,14 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class FareStrategyImpl implements FareStrategy{
-    @Override
-    public double calculate(FareRate fareRate, double distance, double duration, double surge, double discount) {
-        double baseFare = fareRate.getBaseFare();
-        double distanceFare = fareRate.getPerKmRate();
-        double minFare = fareRate.getMinFare();
-        double durationFare = fareRate.getPerMinRate();
+    private final PricingPipeline pricingPipeline;
 
-        double finalFare = (baseFare + distanceFare + durationFare) * surge;
-        finalFare = Math.max(finalFare , minFare);
+    public FareStrategyImpl(PricingPipeline pricingPipeline) {
+        this.pricingPipeline = pricingPipeline;
+    }
 
-        if(discount > 0){
-            finalFare -= finalFare * (discount / 100);
-        }
-        return Math.round(finalFare);
+    @Override
+    public double calculate(FareRate fareRate, double distance, double duration, double surge, double discount) {
+        return pricingPipeline.price(fareRate, distance, duration, surge, discount);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package org.mrstm.hdfareservice.strategies;
+
+import org.mrstm.uberentityservice.models.FareRate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles the configured stage list ({@code fare.pricing.stages}) against a FareRate and keeps
+ * one program per rate version. Rates are never edited in place (a change inserts a new row),
+ * so a program stays valid for as long as its rate id is in use.
+ */
+@Component
+public class PricingPipeline {
+    private final PricingStage[] stages;
+    private final double[] hourMultipliers;
+    private final double roundingStep;
+    private final double maxDiscountPercent;
+    private final Clock clock;
+    private final Map<Long, PricingProgram> programs = new ConcurrentHashMap<>();
+    private volatile int hourOfDay;
+
+    public PricingPipeline(@Value("${fare.pricing.stages:base,per-km,per-min,time-of-day,surge,min-fare,discount,rounding}") String stages,
+                           @Value("${fare.pricing.time-of-day:}") String timeOfDay,
+                           @Value("${fare.pricing.rounding-step:1}") double roundingStep,
+                           @Value("${fare.pricing.max-discount-percent:50}") double maxDiscountPercent) {
+        this.stages = Arrays.stream(stages.split(","))
+                .filter(stage -> !stage.isBlank())
+                .map(PricingStage::fromProperty)
+                .toArray(PricingStage[]::new);
+        this.hourMultipliers = parseTimeOfDay(timeOfDay);
+        this.roundingStep = roundingStep > 0 ? roundingStep : 1;
+        this.maxDiscountPercent = maxDiscountPercent;
+        this.clock = Clock.systemDefaultZone();
+        updateHourOfDay();
+    }
+
+    public double price(FareRate fareRate, double distance, double duration, double surge, double discount) {
+        return programFor(fareRate).evaluate(distance, duration, surge, discount, hourOfDay);
+    }
+
+    public PricingProgram programFor(FareRate fareRate) {
+        if (fareRate.getId() == null) {
+            return compile(fareRate);
+        }
+        PricingProgram program = programs.get(fareRate.getId());
+        if (program == null) {
+            program = programs.computeIfAbsent(fareRate.getId(), id -> compile(fareRate));
+        }
+        return program;
+    }
+
+    // keeps LocalTime off the per-request path
+    @Scheduled(fixedRate = 30_000)
+    public void updateHourOfDay() {
+        hourOfDay = LocalTime.now(clock).getHour();
+    }
+
+    PricingProgram compile(FareRate fareRate) {
+        double[] operands = new double[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            operands[i] = switch (stages[i]) {
+                case BASE -> fareRate.getBaseFare();
+                case PER_KM -> fareRate.getPerKmRate();
+                case PER_MIN -> fareRate.getPerMinRate();
+                case MIN_FARE -> fareRate.getMinFare();
+                case DISCOUNT -> maxDiscountPercent;
+                case ROUNDING -> roundingStep;
+                case TIME_OF_DAY, SURGE -> 0;
+            };
+        }
+        long fareRateId = fareRate.getId() == null ? -1 : fareRate.getId();
+        return new PricingProgram(fareRateId, stages.clone(), operands, hourMultipliers);
+    }
+
+    /**
+     * Parses {@code "0-5:1.25,22-23:1.1"} (inclusive hour ranges) into a multiplier per hour; unlisted hours are 1.0.
+     */
+    private static double[] parseTimeOfDay(String timeOfDay) {
+        double[] multipliers = new double[24];
+        Arrays.fill(multipliers, 1.0);
+        if (timeOfDay == null || timeOfDay.isBlank()) {
+            return multipliers;
+        }
+        for (String entry : timeOfDay.split(",")) {
+            String[] rangeAndMultiplier = entry.trim().split(":");
+            String[] hours = rangeAndMultiplier[0].split("-");
+            int from = Integer.parseInt(hours[0].trim());
+            int to = hours.length > 1 ? Integer.parseInt(hours[1].trim()) : from;
+            double multiplier = Double.parseDouble(rangeAndMultiplier[1].trim());
+            for (int hour = from; hour <= to; hour++) {
+                multipliers[hour] = multiplier;
+            }
+        }
+        return multipliers;
+    }
+}
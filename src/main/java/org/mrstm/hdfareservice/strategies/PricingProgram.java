@@ -0,0 +1,43 @@
+package org.mrstm.hdfareservice.strategies;
+
+/**
+ * A pricing pipeline compiled against one FareRate: the stage order and every rate-dependent
+ * constant are resolved up front, so evaluating it is a single pass over two arrays with no
+ * allocation.
+ */
+public final class PricingProgram {
+    private final long fareRateId;
+    private final PricingStage[] stages;
+    private final double[] operands;
+    private final double[] hourMultipliers;
+
+    PricingProgram(long fareRateId, PricingStage[] stages, double[] operands, double[] hourMultipliers) {
+        this.fareRateId = fareRateId;
+        this.stages = stages;
+        this.operands = operands;
+        this.hourMultipliers = hourMultipliers;
+    }
+
+    public long getFareRateId() {
+        return fareRateId;
+    }
+
+    public double evaluate(double distance, double duration, double surge, double discount, int hourOfDay) {
+        double fare = 0;
+        for (int i = 0; i < stages.length; i++) {
+            double operand = operands[i];
+            switch (stages[i]) {
+                case BASE -> fare += operand;
+                case PER_KM -> fare += operand * distance;
+                case PER_MIN -> fare += operand * duration;
+                case TIME_OF_DAY -> fare *= hourMultipliers[hourOfDay];
+                case SURGE -> fare *= surge;
+                case MIN_FARE -> fare = Math.max(fare, operand);
+                // operand is the highest discount percentage a caller may apply
+                case DISCOUNT -> fare -= fare * (Math.min(Math.max(discount, 0), operand) / 100);
+                case ROUNDING -> fare = Math.round(fare / operand) * operand;
+            }
+        }
+        return fare;
+    }
+}
@@ -0,0 +1,21 @@
+package org.mrstm.hdfareservice.strategies;
+
+import java.util.Locale;
+
+/**
+ * Building blocks of a pricing pipeline, applied in the configured order to a running fare.
+ */
+public enum PricingStage {
+    BASE,
+    PER_KM,
+    PER_MIN,
+    TIME_OF_DAY,
+    SURGE,
+    MIN_FARE,
+    DISCOUNT,
+    ROUNDING;
+
+    public static PricingStage fromProperty(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,40 @@
+CREATE TABLE IF NOT EXISTS fare_rate_usage (
+    booking_id   BIGINT      NOT NULL PRIMARY KEY,
+    fare_rate_id BIGINT      NOT NULL,
+    created_at   DATETIME(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS driver_daily_earnings (
+    driver_id      BIGINT      NOT NULL,
+    earning_date   DATE        NOT NULL,
+    total_earnings DOUBLE      NOT NULL,
+    ride_count     INT         NOT NULL,
+    updated_at     DATETIME(6) NOT NULL,
+    PRIMARY KEY (driver_id, earning_date)
+);
+
+CREATE TABLE IF NOT EXISTS fare_archive (
+    id          BIGINT      NOT NULL,
+    booking_id  BIGINT      NOT NULL,
+    driver_id   BIGINT,
+    car_type    VARCHAR(32),
+    distance    DOUBLE      NOT NULL,
+    duration    DOUBLE      NOT NULL,
+    surge       DOUBLE      NOT NULL,
+    discount    DOUBLE      NOT NULL,
+    final_fare  DOUBLE      NOT NULL,
+    created_at  DATETIME(6) NOT NULL,
+    updated_at  DATETIME(6),
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id, created_at),
+    -- partitioned tables need the partition column in every unique key, so this only stops the archiver
+    -- copying the same fare twice; one fare per booking comes from fare's booking_id key plus the archive
+    -- lookup in FareJdbcRepository.batchInsertIfAbsent
+    UNIQUE KEY uk_fare_archive_booking_created (booking_id, created_at)
+);
+
+CREATE TABLE IF NOT EXISTS fare_quote_redemption (
+    quote_hash  BINARY(32)  NOT NULL PRIMARY KEY,
+    booking_id  BIGINT      NOT NULL,
+    redeemed_at DATETIME(6) NOT NULL
+);
@@ -0,0 +1,94 @@
+package org.mrstm.hdfareservice.apis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingGoogleMapsServiceTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    void pairsSharingAnOriginGoInOneRequest() {
+        List<BatchingGoogleMapsService.PendingPair> pairs = List.of(
+                pair(location(1, 1), location(2, 2)),
+                pair(location(1, 1), location(3, 3)),
+                pair(location(1, 1), location(4, 4)));
+
+        List<BatchingGoogleMapsService.MatrixRequest> requests = BatchingGoogleMapsService.pack(pairs);
+
+        assertEquals(1, requests.size());
+        assertEquals(3, requests.get(0).elements());
+    }
+
+    @Test
+    void pairsSharingADestinationGoInOneRequest() {
+        List<BatchingGoogleMapsService.PendingPair> pairs = List.of(
+                pair(location(1, 1), location(9, 9)),
+                pair(location(2, 2), location(9, 9)),
+                pair(location(3, 3), location(9, 9)));
+
+        List<BatchingGoogleMapsService.MatrixRequest> requests = BatchingGoogleMapsService.pack(pairs);
+
+        assertEquals(1, requests.size());
+        assertEquals(3, requests.get(0).elements());
+    }
+
+    @Test
+    void unrelatedPairsAreNotCrossMultiplied() {
+        List<BatchingGoogleMapsService.PendingPair> pairs = List.of(
+                pair(location(1, 1), location(11, 11)),
+                pair(location(2, 2), location(12, 12)),
+                pair(location(3, 3), location(13, 13)));
+
+        List<BatchingGoogleMapsService.MatrixRequest> requests = BatchingGoogleMapsService.pack(pairs);
+
+        assertEquals(3, requests.size());
+        requests.forEach(request -> assertEquals(1, request.elements()));
+    }
+
+    @Test
+    void splitsAnOriginWithMoreDestinationsThanOneRequestAllows() {
+        List<BatchingGoogleMapsService.PendingPair> pairs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            pairs.add(pair(location(1, 1), location(10 + i, 10 + i)));
+        }
+
+        List<BatchingGoogleMapsService.MatrixRequest> requests = BatchingGoogleMapsService.pack(pairs);
+
+        assertEquals(2, requests.size());
+        assertEquals(25, requests.get(0).elements());
+        assertEquals(5, requests.get(1).elements());
+    }
+
+    @Test
+    void billsOneElementPerRequestedPair() {
+        List<BatchingGoogleMapsService.PendingPair> pairs = List.of(
+                pair(location(1, 1), location(2, 2)),
+                pair(location(1, 1), location(3, 3)),
+                pair(location(4, 4), location(9, 9)),
+                pair(location(5, 5), location(9, 9)),
+                pair(location(6, 6), location(7, 7)));
+
+        List<BatchingGoogleMapsService.MatrixRequest> requests = BatchingGoogleMapsService.pack(pairs);
+
+        assertEquals(pairs.size(), requests.stream().mapToInt(BatchingGoogleMapsService.MatrixRequest::elements).sum());
+        assertEquals(pairs.size(), requests.stream().mapToInt(request -> request.pairs().size()).sum());
+        requests.forEach(request -> assertTrue(request.elements() <= 100));
+    }
+
+    private static BatchingGoogleMapsService.PendingPair pair(ExactLocation start, ExactLocation end) {
+        return new BatchingGoogleMapsService.PendingPair(start, end, new CompletableFuture<>());
+    }
+
+    private static ExactLocation location(double latitude, double longitude) {
+        return OBJECT_MAPPER.convertValue(Map.of("latitude", latitude, "longitude", longitude), ExactLocation.class);
+    }
+}
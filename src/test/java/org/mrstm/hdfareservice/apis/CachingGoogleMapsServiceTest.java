@@ -0,0 +1,88 @@
+package org.mrstm.hdfareservice.apis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mrstm.hdfareservice.utils.GeoHash;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CachingGoogleMapsServiceTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int PRECISION = 7;
+
+    private final AtomicInteger providerCalls = new AtomicInteger();
+    private final GoogleMapsService provider = (start, end) -> {
+        providerCalls.incrementAndGet();
+        return DistanceDuration.builder()
+                .distance(16.4)
+                .duration(31.0)
+                .durationInTraffic(44.0)
+                .build();
+    };
+
+    @Test
+    void geohashMatchesTheReferenceEncoding() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("u4pruyd", GeoHash.encode(57.64911, 10.40744, PRECISION));
+    }
+
+    @Test
+    void nearbyEndPointsInTheSameCellShareAnEntry() {
+        CachingGoogleMapsService cache = cache(Duration.ofMinutes(5));
+        ExactLocation start = location(57.64911, 10.40744);
+        ExactLocation nearStart = location(57.64915, 10.40750);
+        ExactLocation end = location(57.70000, 10.50000);
+        assertEquals(GeoHash.encode(57.64911, 10.40744, PRECISION), GeoHash.encode(57.64915, 10.40750, PRECISION));
+
+        DistanceDuration first = cache.getDistanceAndDuration(start, end);
+        DistanceDuration second = cache.getDistanceAndDuration(nearStart, end);
+
+        assertSame(first, second);
+        assertEquals(1, providerCalls.get());
+    }
+
+    @Test
+    void differentCellsAndReversedRoutesAreSeparateEntries() {
+        CachingGoogleMapsService cache = cache(Duration.ofMinutes(5));
+        ExactLocation start = location(57.64911, 10.40744);
+        ExactLocation elsewhere = location(57.65200, 10.41200);
+        ExactLocation end = location(57.70000, 10.50000);
+        assertNotEquals(GeoHash.encode(57.64911, 10.40744, PRECISION), GeoHash.encode(57.65200, 10.41200, PRECISION));
+
+        cache.getDistanceAndDuration(start, end);
+        cache.getDistanceAndDuration(elsewhere, end);
+        cache.getDistanceAndDuration(end, start);
+
+        assertEquals(3, providerCalls.get());
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws InterruptedException {
+        CachingGoogleMapsService cache = cache(Duration.ofMillis(20));
+        ExactLocation start = location(57.64911, 10.40744);
+        ExactLocation end = location(57.70000, 10.50000);
+
+        cache.getDistanceAndDuration(start, end);
+        Thread.sleep(50);
+        cache.getDistanceAndDuration(start, end);
+
+        assertEquals(2, providerCalls.get());
+    }
+
+    private CachingGoogleMapsService cache(Duration ttl) {
+        return new CachingGoogleMapsService(provider, new SimpleMeterRegistry(), PRECISION, 1_000, ttl);
+    }
+
+    private static ExactLocation location(double latitude, double longitude) {
+        return OBJECT_MAPPER.convertValue(Map.of("latitude", latitude, "longitude", longitude), ExactLocation.class);
+    }
+}
@@ -0,0 +1,173 @@
+package org.mrstm.hdfareservice.consumers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mrstm.hdfareservice.dto.BookingCompletedEvent;
+import org.mrstm.hdfareservice.dto.SettlementResult;
+import org.mrstm.hdfareservice.services.AdmissionController;
+import org.mrstm.hdfareservice.services.FareService;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookingCompletedConsumerTest {
+    private static final String RETRY_TOPIC = "booking-completed-retry";
+    private static final String DEAD_LETTER_TOPIC = "booking-completed.DLT";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final FareService fareService = mock(FareService.class);
+    private final AdmissionController admissionController = mock(AdmissionController.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    private BookingCompletedConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        when(admissionController.admitSettlement()).thenReturn(mock(AdmissionController.Permit.class));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        consumer = new BookingCompletedConsumer(fareService, admissionController, kafkaTemplate, new ObjectMapper(),
+                RETRY_TOPIC, DEAD_LETTER_TOPIC, MAX_ATTEMPTS, RETRY_DELAY);
+    }
+
+    @Test
+    void settledRecordsAreNotForwarded() {
+        SettlementResult result = new SettlementResult();
+        result.settled(1L);
+        result.duplicate(2L);
+        when(fareService.settleCompletedBookings(anyMap())).thenReturn(result);
+
+        consumer.onBookingsCompleted(List.of(record(1L, 0, 0), record(2L, 0, 0)));
+
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    void malformedRecordsGoStraightToTheDeadLetterTopic() {
+        consumer.onBookingsCompleted(List.of(record("key", "not json", 0, 0)));
+
+        ProducerRecord<String, Object> forwarded = forwarded(1).get(0);
+        assertEquals(DEAD_LETTER_TOPIC, forwarded.topic());
+        assertEquals("not json", forwarded.value());
+        assertEquals("0", header(forwarded, BookingCompletedConsumer.ATTEMPT_HEADER));
+        verify(fareService, never()).settleCompletedBookings(anyMap());
+    }
+
+    @Test
+    void retryableFailuresGoToTheRetryTopicWithTheNextAttempt() {
+        failing(1L, true);
+
+        consumer.onBookingsCompleted(List.of(record(1L, 0, 0)));
+
+        ProducerRecord<String, Object> forwarded = forwarded(1).get(0);
+        assertEquals(RETRY_TOPIC, forwarded.topic());
+        assertEquals(1L, ((BookingCompletedEvent) forwarded.value()).getBookingId());
+        assertEquals("1", header(forwarded, BookingCompletedConsumer.ATTEMPT_HEADER));
+        assertEquals("maps timed out", header(forwarded, BookingCompletedConsumer.REASON_HEADER));
+    }
+
+    @Test
+    void retryableFailuresOnTheLastAttemptGoToTheDeadLetterTopic() {
+        failing(1L, true);
+
+        consumer.onBookingsCompleted(List.of(record(1L, MAX_ATTEMPTS - 1, 0)));
+
+        ProducerRecord<String, Object> forwarded = forwarded(1).get(0);
+        assertEquals(DEAD_LETTER_TOPIC, forwarded.topic());
+        assertEquals(String.valueOf(MAX_ATTEMPTS), header(forwarded, BookingCompletedConsumer.ATTEMPT_HEADER));
+    }
+
+    @Test
+    void permanentFailuresGoToTheDeadLetterTopic() {
+        failing(1L, false);
+
+        consumer.onBookingsCompleted(List.of(record(1L, 0, 0)));
+
+        assertEquals(DEAD_LETTER_TOPIC, forwarded(1).get(0).topic());
+    }
+
+    @Test
+    void retriesAreSettledOnlyOnceDue() {
+        SettlementResult result = new SettlementResult();
+        result.settled(1L);
+        when(fareService.settleCompletedBookings(anyMap())).thenReturn(result);
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        long now = System.currentTimeMillis();
+
+        consumer.onRetriesDue(List.of(
+                record(1L, 1, now - RETRY_DELAY.toMillis() - 1_000),
+                record(2L, 1, now)), acknowledgment);
+
+        verify(fareService).settleCompletedBookings(Map.of(1L, new BookingCompletedEvent(1L, "", 7L)));
+        ArgumentCaptor<Duration> sleep = ArgumentCaptor.forClass(Duration.class);
+        verify(acknowledgment).nack(eq(1), sleep.capture());
+        assertEquals(RETRY_DELAY.toMillis(), sleep.getValue().toMillis(), 1_000);
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void aFullyDueBatchIsAcknowledged() {
+        SettlementResult result = new SettlementResult();
+        result.settled(1L);
+        when(fareService.settleCompletedBookings(anyMap())).thenReturn(result);
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        consumer.onRetriesDue(List.of(record(1L, 1, System.currentTimeMillis() - RETRY_DELAY.toMillis())), acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verify(acknowledgment, never()).nack(anyInt(), any(Duration.class));
+    }
+
+    private void failing(Long bookingId, boolean retryable) {
+        SettlementResult result = new SettlementResult();
+        result.failed(bookingId, "maps timed out", retryable);
+        when(fareService.settleCompletedBookings(anyMap())).thenReturn(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProducerRecord<String, Object>> forwarded(int count) {
+        ArgumentCaptor<ProducerRecord<String, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, times(count)).send(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static String header(ProducerRecord<String, Object> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+
+    private static ConsumerRecord<String, String> record(Long bookingId, int attempt, long timestamp) {
+        return record(String.valueOf(bookingId), "{\"bookingId\":" + bookingId + ",\"quoteToken\":\"\",\"riderId\":7}", attempt, timestamp);
+    }
+
+    private static ConsumerRecord<String, String> record(String key, String value, int attempt, long timestamp) {
+        RecordHeaders headers = new RecordHeaders();
+        if (attempt > 0) {
+            headers.add(BookingCompletedConsumer.ATTEMPT_HEADER, String.valueOf(attempt).getBytes(StandardCharsets.UTF_8));
+        }
+        return new ConsumerRecord<>("booking-completed", 0, 0, timestamp, TimestampType.CREATE_TIME,
+                -1, -1, key, value, headers, Optional.empty());
+    }
+}
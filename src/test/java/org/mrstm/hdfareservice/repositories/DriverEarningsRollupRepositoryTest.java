@@ -0,0 +1,103 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs against in-memory H2 in MySQL mode, which supports the ON DUPLICATE KEY upsert the rollup uses.
+ */
+class DriverEarningsRollupRepositoryTest {
+    private static final long DRIVER = 7;
+    private static final LocalDate MARCH_1 = LocalDate.of(2026, 3, 1);
+
+    private JdbcTemplate jdbcTemplate;
+    private DriverEarningsRollupRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE booking (id BIGINT PRIMARY KEY, driver_id BIGINT)");
+        jdbcTemplate.execute("""
+                CREATE TABLE fare (
+                    id         BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    booking_id BIGINT NOT NULL,
+                    final_fare DOUBLE NOT NULL,
+                    created_at DATETIME(6) NOT NULL
+                )""");
+        jdbcTemplate.execute("""
+                CREATE TABLE fare_archive (
+                    id         BIGINT NOT NULL,
+                    booking_id BIGINT NOT NULL,
+                    driver_id  BIGINT,
+                    final_fare DOUBLE NOT NULL,
+                    created_at DATETIME(6) NOT NULL
+                )""");
+        jdbcTemplate.execute("""
+                CREATE TABLE driver_daily_earnings (
+                    driver_id      BIGINT      NOT NULL,
+                    earning_date   DATE        NOT NULL,
+                    total_earnings DOUBLE      NOT NULL,
+                    ride_count     INT         NOT NULL,
+                    updated_at     DATETIME(6) NOT NULL,
+                    PRIMARY KEY (driver_id, earning_date)
+                )""");
+        repository = new DriverEarningsRollupRepository(jdbcTemplate);
+    }
+
+    @Test
+    void incrementsAddUpOnTheGivenDay() {
+        repository.increment(DRIVER, MARCH_1, 100);
+        repository.batchIncrement(MARCH_1, List.of(new DriverEarningsRollupRepository.DriverEarning(DRIVER, 50.0)));
+        repository.increment(DRIVER, MARCH_1.plusDays(1), 20);
+
+        assertEquals(List.of(new DriverEarningsRollupRepository.DailyEarning(MARCH_1, 150), new DriverEarningsRollupRepository.DailyEarning(MARCH_1.plusDays(1), 20)),
+                repository.getDailyEarningsBetween(DRIVER, MARCH_1, MARCH_1.plusDays(6)));
+    }
+
+    @Test
+    void rebuildRecomputesOnlyDaysInsideTheWindow() {
+        liveFare(1, 100, MARCH_1.atTime(23, 59));
+        archivedFare(2, 40, MARCH_1.atTime(8, 0));
+        liveFare(3, 70, MARCH_1.plusDays(1).atStartOfDay());
+        repository.increment(DRIVER, MARCH_1, 999);
+        repository.increment(DRIVER, MARCH_1.plusDays(1), 5);
+
+        assertEquals(1, repository.rebuild(MARCH_1, MARCH_1.plusDays(1)));
+
+        assertEquals(List.of(new DriverEarningsRollupRepository.DailyEarning(MARCH_1, 140), new DriverEarningsRollupRepository.DailyEarning(MARCH_1.plusDays(1), 5)),
+                repository.getDailyEarningsBetween(DRIVER, MARCH_1, MARCH_1.plusDays(6)));
+    }
+
+    @Test
+    void historySpanCoversFaresArchiveAndRollup() {
+        assertNull(repository.historySpan());
+
+        liveFare(1, 100, MARCH_1.atTime(12, 0));
+        archivedFare(2, 40, MARCH_1.minusDays(40).atTime(12, 0));
+        repository.increment(DRIVER, MARCH_1.plusDays(3), 10);
+
+        assertEquals(new DriverEarningsRollupRepository.DateSpan(MARCH_1.minusDays(40), MARCH_1.plusDays(3)), repository.historySpan());
+    }
+
+    private void liveFare(long bookingId, double finalFare, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO booking (id, driver_id) VALUES (?, ?)", bookingId, DRIVER);
+        jdbcTemplate.update("INSERT INTO fare (booking_id, final_fare, created_at) VALUES (?, ?, ?)", bookingId, finalFare, createdAt);
+    }
+
+    private void archivedFare(long bookingId, double finalFare, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO fare_archive (id, booking_id, driver_id, final_fare, created_at) VALUES (?, ?, ?, ?, ?)",
+                bookingId, bookingId, DRIVER, finalFare, createdAt);
+    }
+}
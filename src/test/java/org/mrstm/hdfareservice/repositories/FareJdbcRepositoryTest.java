@@ -0,0 +1,120 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs against in-memory H2 in MySQL mode, which supports the same ON DUPLICATE KEY insert
+ * and REPEATABLE READ snapshots the insert-then-read-back relies on.
+ */
+class FareJdbcRepositoryTest {
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2026, 3, 31, 23, 59, 30);
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private FareJdbcRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE fare (
+                    id         BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    booking_id BIGINT NOT NULL,
+                    car_type   VARCHAR(32),
+                    distance   DOUBLE NOT NULL,
+                    duration   DOUBLE NOT NULL,
+                    final_fare DOUBLE NOT NULL,
+                    surge      DOUBLE NOT NULL,
+                    discount   DOUBLE NOT NULL,
+                    created_at DATETIME(6),
+                    updated_at DATETIME(6),
+                    CONSTRAINT uk_fare_booking_id UNIQUE (booking_id)
+                )""");
+        jdbcTemplate.execute("""
+                CREATE TABLE fare_archive (
+                    id         BIGINT NOT NULL,
+                    booking_id BIGINT NOT NULL,
+                    created_at DATETIME(6) NOT NULL
+                )""");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        repository = new FareJdbcRepository(jdbcTemplate);
+    }
+
+    @Test
+    void insertsFaresForNewBookings() {
+        boolean[] inserted = insert(row(1, 100), row(2, 200));
+
+        assertArrayEquals(new boolean[]{true, true}, inserted);
+        assertEquals(2, count());
+    }
+
+    @Test
+    void skipsBookingsThatAlreadyHaveAFare() {
+        insert(row(1, 100));
+
+        boolean[] inserted = insert(row(1, 999), row(2, 200));
+
+        assertArrayEquals(new boolean[]{false, true}, inserted);
+        assertEquals(100, jdbcTemplate.queryForObject("SELECT final_fare FROM fare WHERE booking_id = 1", Double.class));
+    }
+
+    @Test
+    void onlyTheFirstOfRepeatedBookingsInABatchCounts() {
+        boolean[] inserted = insert(row(1, 100), row(1, 999));
+
+        assertArrayEquals(new boolean[]{true, false}, inserted);
+        assertEquals(1, count());
+        assertEquals(100, jdbcTemplate.queryForObject("SELECT final_fare FROM fare WHERE booking_id = 1", Double.class));
+    }
+
+    @Test
+    void skipsBookingsWhoseFareWasArchived() {
+        jdbcTemplate.update("INSERT INTO fare_archive (id, booking_id, created_at) VALUES (10, 1, CURRENT_TIMESTAMP)");
+
+        boolean[] inserted = insert(row(1, 100), row(2, 200));
+
+        assertArrayEquals(new boolean[]{false, true}, inserted);
+        assertEquals(List.of(2L), jdbcTemplate.queryForList("SELECT booking_id FROM fare", Long.class));
+    }
+
+    @Test
+    void stampsFaresWithTheCallersTime() {
+        insert(row(1, 100));
+
+        assertEquals(CREATED_AT, jdbcTemplate.queryForObject("SELECT created_at FROM fare WHERE booking_id = 1", LocalDateTime.class));
+    }
+
+    @Test
+    void anEmptyBatchWritesNothing() {
+        assertArrayEquals(new boolean[0], insert());
+        assertEquals(0, count());
+    }
+
+    private boolean[] insert(FareJdbcRepository.FareRow... rows) {
+        return transactionTemplate.execute(status -> repository.batchInsertIfAbsent(List.of(rows), CREATED_AT));
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fare", Integer.class);
+    }
+
+    private static FareJdbcRepository.FareRow row(long bookingId, double finalFare) {
+        return new FareJdbcRepository.FareRow(bookingId, 7L, "SEDAN", 12.5, 31.0, finalFare, 1.0, 10.0, 3L);
+    }
+}
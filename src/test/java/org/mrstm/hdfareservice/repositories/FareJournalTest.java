@@ -0,0 +1,83 @@
+package org.mrstm.hdfareservice.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FareJournalTest {
+    private static final FareJdbcRepository.FareRow ROW =
+            new FareJdbcRepository.FareRow(42L, 7L, "SEDAN", 12.5, 31.0, 412.0, 1.2, 10.0, 3L);
+    private static final FareJdbcRepository.FareRow ROW_WITHOUT_IDS =
+            new FareJdbcRepository.FareRow(43L, null, "HATCHBACK", 3.25, 9.5, 96.0, 1.0, 0.0, null);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodesWhatItEncodes() {
+        assertEquals(ROW, FareJournal.decode(FareJournal.encode(ROW)));
+        assertEquals(ROW_WITHOUT_IDS, FareJournal.decode(FareJournal.encode(ROW_WITHOUT_IDS)));
+    }
+
+    @Test
+    void rejectsEntriesThatFailTheChecksum() {
+        String line = FareJournal.encode(ROW);
+
+        assertNull(FareJournal.decode(line.replace("412.0", "999.0")));
+        assertNull(FareJournal.decode(line.substring(0, line.length() / 2)));
+        assertNull(FareJournal.decode(""));
+    }
+
+    @Test
+    void recoverSkipsATornLastLine() throws IOException {
+        try (FareJournal journal = new FareJournal(directory)) {
+            assertTrue(journal.recover().isEmpty());
+            journal.sync(journal.write(List.of(ROW, ROW_WITHOUT_IDS)));
+        }
+        // a crash in the middle of appending the next entry
+        Path segment = onlySegment();
+        String torn = FareJournal.encode(new FareJdbcRepository.FareRow(44L, 8L, "SUV", 5.0, 12.0, 150.0, 1.0, 0.0, 3L));
+        Files.writeString(segment, torn.substring(0, torn.length() - 4), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (FareJournal journal = new FareJournal(directory)) {
+            assertEquals(List.of(ROW, ROW_WITHOUT_IDS), journal.recover());
+        }
+    }
+
+    @Test
+    void recoveredSegmentsAreReleasedAfterTheNextSeal() throws IOException {
+        try (FareJournal journal = new FareJournal(directory)) {
+            journal.recover();
+            journal.sync(journal.write(List.of(ROW)));
+        }
+        Path leftOver = onlySegment();
+
+        try (FareJournal journal = new FareJournal(directory)) {
+            assertEquals(List.of(ROW), journal.recover());
+            List<Path> sealed = journal.seal();
+            assertTrue(sealed.contains(leftOver));
+            journal.release(sealed);
+        }
+        assertFalse(Files.exists(leftOver));
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(path -> Files.isRegularFile(path)).sorted().toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.mrstm.hdfareservice.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimiterTest {
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void refusesWithoutWaitingOnceTheLimitIsReached() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, 2.0, 0.9);
+
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        assertFalse(limiter.tryAcquire(Duration.ZERO));
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void releaseWakesAWaitingCaller() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 2.0, 0.9);
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.tryAcquire(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        });
+        while (!limiter.isCongested()) {
+            Thread.onSpinWait();
+        }
+        limiter.release(MILLIS, false);
+
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void waitingGivesUpAfterMaxWait() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 2.0, 0.9);
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire(Duration.ofMillis(50)));
+        assertTrue(System.nanoTime() - start >= 50 * MILLIS);
+    }
+
+    @Test
+    void droppedCallsBackOffButNotBelowTheMinimum() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 4, 20, 2.0, 0.5);
+
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        limiter.release(0, true);
+        assertEquals(5, limiter.getLimit());
+
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        limiter.release(0, true);
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void unconditionalAcquireMayExceedTheLimit() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 2.0, 0.9);
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+
+        limiter.acquireUnconditionally();
+
+        assertEquals(2, limiter.getInFlight());
+        assertFalse(limiter.tryAcquire(Duration.ZERO));
+    }
+
+    @Test
+    void growsWhileSaturatedAtSteadyLatencyAndShrinksWhenCallsSlowDown() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 100, 2.0, 0.9);
+
+        for (int i = 0; i < 50; i++) {
+            fill(limiter);
+            limiter.release(10 * MILLIS, false);
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 4, "limit grew to " + grown);
+
+        // few enough samples that the slow baseline has barely moved
+        for (int i = 0; i < 10; i++) {
+            fill(limiter);
+            limiter.release(200 * MILLIS, false);
+        }
+        assertTrue(limiter.getLimit() < grown, "limit shrank to " + limiter.getLimit());
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(20, 1, 100, 2.0, 0.9);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire(Duration.ZERO));
+            limiter.release(10 * MILLIS, false);
+        }
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    private static void fill(AdaptiveLimiter limiter) throws InterruptedException {
+        while (limiter.tryAcquire(Duration.ZERO)) {
+            // take every free slot so the limit is what holds callers back
+        }
+    }
+}
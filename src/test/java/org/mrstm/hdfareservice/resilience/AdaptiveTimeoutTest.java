@@ -0,0 +1,61 @@
+package org.mrstm.hdfareservice.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveTimeoutTest {
+
+    @Test
+    void startsAtTheInitialTimeout() {
+        AdaptiveTimeout timeout = timeout(Duration.ofMillis(800));
+
+        assertEquals(800, timeout.currentMillis());
+    }
+
+    @Test
+    void settlesNearASteadyLatency() {
+        AdaptiveTimeout timeout = timeout(Duration.ofMillis(800));
+
+        for (int i = 0; i < 200; i++) {
+            timeout.record(300);
+        }
+
+        assertEquals(300, timeout.currentMillis(), 5);
+    }
+
+    @Test
+    void varianceWidensTheTimeoutAboveTheMean() {
+        AdaptiveTimeout steady = timeout(Duration.ofMillis(300));
+        AdaptiveTimeout jittery = timeout(Duration.ofMillis(300));
+
+        for (int i = 0; i < 200; i++) {
+            steady.record(300);
+            jittery.record(i % 2 == 0 ? 100 : 500);
+        }
+
+        assertTrue(jittery.currentMillis() > steady.currentMillis() + 100,
+                "jittery " + jittery.currentMillis() + " vs steady " + steady.currentMillis());
+    }
+
+    @Test
+    void isClampedToTheConfiguredRange() {
+        AdaptiveTimeout fast = timeout(Duration.ofMillis(800));
+        AdaptiveTimeout slow = timeout(Duration.ofMillis(800));
+
+        for (int i = 0; i < 200; i++) {
+            fast.record(5);
+            slow.record(60_000);
+        }
+
+        assertEquals(200, fast.currentMillis());
+        assertEquals(5_000, slow.currentMillis());
+    }
+
+    private static AdaptiveTimeout timeout(Duration initial) {
+        return new AdaptiveTimeout(initial, Duration.ofMillis(200), Duration.ofSeconds(5), 0.2, 3);
+    }
+}
@@ -0,0 +1,102 @@
+package org.mrstm.hdfareservice.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    @Test
+    void staysClosedUntilTheMinimumNumberOfCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, Duration.ofMinutes(1), 1);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void opensAtTheFailureRateThresholdAndRejectsCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, Duration.ofMinutes(1), 1);
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void failureRateCountsOnlyTheLastWindowOfCalls() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, Duration.ofMinutes(1), 1);
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // 2 of the last 4 calls failed, though only 2 of all 5 did
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void admitsLimitedProbesAfterTheOpenDurationAndClosesWhenTheySucceed() throws InterruptedException {
+        CircuitBreaker breaker = opened(2);
+        Thread.sleep(20);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void aFailedProbeReopens() throws InterruptedException {
+        CircuitBreaker breaker = opened(1);
+        Thread.sleep(20);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void releaseHandsBackAProbeSlot() throws InterruptedException {
+        CircuitBreaker breaker = opened(1);
+        Thread.sleep(20);
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.release();
+
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private static CircuitBreaker opened(int halfOpenProbes) {
+        CircuitBreaker breaker = new CircuitBreaker(2, 2, 0.5, Duration.ofMillis(10), halfOpenProbes);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
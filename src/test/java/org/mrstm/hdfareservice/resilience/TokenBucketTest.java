@@ -0,0 +1,40 @@
+package org.mrstm.hdfareservice.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsABurstUpToCapacityThenRefuses() {
+        TokenBucket bucket = new TokenBucket(3, 0.001);
+
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 1000);
+        assertTrue(bucket.tryConsume());
+
+        Thread.sleep(20);
+
+        assertTrue(bucket.tryConsume());
+    }
+
+    @Test
+    void neverHoldsMoreThanCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(2, 1000);
+
+        Thread.sleep(20);
+
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+    }
+}
@@ -0,0 +1,134 @@
+package org.mrstm.hdfareservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mrstm.hdfareservice.apis.GoogleMapsService;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorridorMatrixTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final List<String> ZONES = List.of(
+            "airport:28.5562:77.1000:2000",
+            "cp:28.6315:77.2167:1500",
+            "cyber-city:28.4950:77.0890:1500");
+    private static final ExactLocation AIRPORT = location(28.5562, 77.1000);
+    private static final ExactLocation CP = location(28.6315, 77.2167);
+    private static final ExactLocation CYBER_CITY = location(28.4950, 77.0890);
+
+    private final List<double[]> providerCalls = new CopyOnWriteArrayList<>();
+    private final GoogleMapsService provider = (start, end) -> {
+        providerCalls.add(new double[]{start.getLatitude(), end.getLatitude()});
+        return DistanceDuration.builder()
+                .startAddress("from " + start.getLatitude())
+                .endAddress("to " + end.getLatitude())
+                .distance(16.4)
+                .duration(31.0)
+                .durationInTraffic(44.0)
+                .build();
+    };
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void pointsOutsideZonesOrWithinOneZoneAreNotCorridors() {
+        CorridorMatrix matrix = matrix(ZONES, 600);
+
+        assertTrue(matrix.lookup(AIRPORT, location(28.7000, 77.3000)).isEmpty());
+        assertTrue(matrix.lookup(AIRPORT, location(28.5570, 77.1010)).isEmpty());
+    }
+
+    @Test
+    void coldUntilRefreshedThenServesTheLoadedProfile() throws Exception {
+        CorridorMatrix matrix = matrix(ZONES, 600);
+        assertTrue(matrix.lookup(AIRPORT, CP).isEmpty());
+
+        refresh(matrix);
+
+        // any point inside the zones maps to the zone pair's profile
+        DistanceDuration route = matrix.lookup(location(28.5570, 77.1010), location(28.6320, 77.2160)).orElseThrow();
+        assertEquals(16.4, route.getDistance(), 1e-4);
+        assertEquals(31.0, route.getDuration(), 1e-4);
+        assertEquals(44.0, route.getDurationInTraffic(), 1e-4);
+        assertEquals("from 28.5562", route.getStartAddress());
+        assertEquals("to 28.6315", route.getEndAddress());
+    }
+
+    @Test
+    void refreshSpendsItsBudgetOnTheMostRequestedPairs() throws Exception {
+        // 60 calls an hour at a one-minute refresh is one call per pass
+        CorridorMatrix matrix = matrix(ZONES, 60);
+        matrix.lookup(CP, CYBER_CITY);
+        matrix.lookup(CP, CYBER_CITY);
+        matrix.lookup(AIRPORT, CP);
+
+        refresh(matrix);
+
+        assertEquals(1, providerCalls.size());
+        assertEquals(28.6315, providerCalls.get(0)[0]);
+        assertEquals(28.4950, providerCalls.get(0)[1]);
+        assertTrue(matrix.lookup(CP, CYBER_CITY).isPresent());
+        assertTrue(matrix.lookup(AIRPORT, CP).isEmpty());
+    }
+
+    @Test
+    void loadedPairsAreNotReloadedWithinTheirBucket() throws Exception {
+        CorridorMatrix matrix = matrix(ZONES, 600);
+        refresh(matrix);
+        int loaded = providerCalls.size();
+        assertEquals(6, loaded);
+
+        refresh(matrix);
+
+        assertEquals(loaded, providerCalls.size());
+    }
+
+    @Test
+    void disabledWithFewerThanTwoZones() throws Exception {
+        CorridorMatrix matrix = matrix(List.of("airport:28.5562:77.1000:2000"), 600);
+
+        refresh(matrix);
+
+        assertTrue(matrix.lookup(AIRPORT, CP).isEmpty());
+        assertTrue(providerCalls.isEmpty());
+    }
+
+    @Test
+    void rejectsMalformedZones() {
+        assertThrows(IllegalArgumentException.class, () -> matrix(List.of("airport:28.5562:77.1000"), 600));
+    }
+
+    private CorridorMatrix matrix(List<String> zones, int callsPerHour) {
+        // one bucket for the whole day, so a test cannot straddle a bucket boundary
+        return new CorridorMatrix(provider, executor, new SimpleMeterRegistry(), true, zones,
+                24 * 60, Duration.ofDays(7), callsPerHour, Duration.ofMinutes(1));
+    }
+
+    private void refresh(CorridorMatrix matrix) throws Exception {
+        matrix.refresh();
+        // the executor runs tasks in order, so the loads are done once this one has run
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    private static ExactLocation location(double latitude, double longitude) {
+        return OBJECT_MAPPER.convertValue(Map.of("latitude", latitude, "longitude", longitude), ExactLocation.class);
+    }
+}
@@ -0,0 +1,139 @@
+package org.mrstm.hdfareservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mrstm.hdfareservice.repositories.FareQuoteRedemptionRepository;
+import org.mrstm.uberentityservice.models.Booking;
+import org.mrstm.uberentityservice.models.CarType;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FareQuoteServiceTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long RIDER_ID = 42;
+    private static final CarType CAR_TYPE = CarType.values()[0];
+    private static final ExactLocation START = location(28.5562, 77.1000);
+    private static final ExactLocation END = location(28.6315, 77.2167);
+
+    private final FareQuoteRedemptionRepository redemptions = mock(FareQuoteRedemptionRepository.class);
+
+    @Test
+    void verifiesAQuoteItIssued() throws GeneralSecurityException {
+        FareQuoteService quotes = quotes("secret", Duration.ofHours(4));
+
+        FareQuoteService.FareQuote quote = quotes.verify(issue(quotes), RIDER_ID, booking(CAR_TYPE, START, END)).orElseThrow();
+
+        assertEquals(RIDER_ID, quote.riderId());
+        assertEquals(CAR_TYPE, quote.carType());
+        assertEquals(7, quote.fareRateId());
+        assertEquals(16.4, quote.distance());
+        assertEquals(44, quote.duration());
+        assertEquals(1.25, quote.surge());
+        assertEquals(10, quote.discount());
+        assertEquals(321, quote.fare());
+        assertEquals(32, quote.tokenHash().length);
+    }
+
+    @Test
+    void rejectsTamperedTokensAndOtherKeys() throws GeneralSecurityException {
+        FareQuoteService quotes = quotes("secret", Duration.ofHours(4));
+        String token = issue(quotes);
+        int dot = token.indexOf('.');
+        String payload = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+        String cheaper = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.replace("|321.0|", "|1.0|").getBytes(StandardCharsets.UTF_8)) + token.substring(dot);
+
+        assertTrue(quotes.verify(cheaper, RIDER_ID, booking(CAR_TYPE, START, END)).isEmpty());
+        assertTrue(quotes.verify("not-a-token", RIDER_ID, booking(CAR_TYPE, START, END)).isEmpty());
+        assertTrue(quotes("other-secret", Duration.ofHours(4)).verify(token, RIDER_ID, booking(CAR_TYPE, START, END)).isEmpty());
+    }
+
+    @Test
+    void rejectsExpiredQuotes() throws GeneralSecurityException {
+        FareQuoteService quotes = quotes("secret", Duration.ofSeconds(-5));
+
+        assertTrue(quotes.verify(issue(quotes), RIDER_ID, booking(CAR_TYPE, START, END)).isEmpty());
+    }
+
+    @Test
+    void isBoundToTheRider() throws GeneralSecurityException {
+        FareQuoteService quotes = quotes("secret", Duration.ofHours(4));
+        String token = issue(quotes);
+
+        assertTrue(quotes.verify(token, RIDER_ID + 1, booking(CAR_TYPE, START, END)).isEmpty());
+        assertTrue(quotes.verify(token, null, booking(CAR_TYPE, START, END)).isEmpty());
+    }
+
+    @Test
+    void endPointsMayMoveWithinTheTolerance() throws GeneralSecurityException {
+        FareQuoteService quotes = quotes("secret", Duration.ofHours(4));
+        String token = issue(quotes);
+
+        // 0.001 degrees of latitude is about 111 m, 0.003 about 333 m
+        assertTrue(quotes.verify(token, RIDER_ID, booking(CAR_TYPE, location(28.5572, 77.1000), END)).isPresent());
+        assertTrue(quotes.verify(token, RIDER_ID, booking(CAR_TYPE, START, location(28.6345, 77.2167))).isEmpty());
+    }
+
+    @Test
+    void rejectsAnotherCarType() throws GeneralSecurityException {
+        assumeTrue(CarType.values().length > 1);
+        FareQuoteService quotes = quotes("secret", Duration.ofHours(4));
+
+        assertTrue(quotes.verify(issue(quotes), RIDER_ID, booking(CarType.values()[1], START, END)).isEmpty());
+    }
+
+    @Test
+    void redeemsOnlyQuotesClaimedForTheirBooking() throws GeneralSecurityException {
+        FareQuoteService quotes = quotes("secret", Duration.ofHours(4));
+        String token = issue(quotes);
+        FareQuoteService.FareQuote quote = quotes.verify(token, RIDER_ID, booking(CAR_TYPE, START, END)).orElseThrow();
+        when(redemptions.claim(anyMap())).thenReturn(Set.of(1L));
+
+        Map<Long, FareQuoteService.FareQuote> redeemed = quotes.redeem(Map.of(1L, quote, 2L, quote));
+
+        assertEquals(Set.of(1L), redeemed.keySet());
+    }
+
+    @Test
+    void requiresASharedSecretUnlessSingleNode() throws GeneralSecurityException {
+        assertThrows(IllegalStateException.class,
+                () -> new FareQuoteService(new SimpleMeterRegistry(), redemptions, "", false, Duration.ofHours(4), 250));
+
+        FareQuoteService singleNode = new FareQuoteService(new SimpleMeterRegistry(), redemptions, "", true, Duration.ofHours(4), 250);
+        assertTrue(singleNode.verify(issue(singleNode), RIDER_ID, booking(CAR_TYPE, START, END)).isPresent());
+    }
+
+    private FareQuoteService quotes(String secret, Duration ttl) throws GeneralSecurityException {
+        return new FareQuoteService(new SimpleMeterRegistry(), redemptions, secret, false, ttl, 250);
+    }
+
+    private static String issue(FareQuoteService quotes) {
+        return quotes.issue(RIDER_ID, CAR_TYPE, 7, START, END, 16.4, 44, 1.25, 10, 321);
+    }
+
+    private static Booking booking(CarType carType, ExactLocation start, ExactLocation end) {
+        return OBJECT_MAPPER.convertValue(Map.of(
+                "carType", carType.name(),
+                "startLocation", Map.of("latitude", start.getLatitude(), "longitude", start.getLongitude()),
+                "endLocation", Map.of("latitude", end.getLatitude(), "longitude", end.getLongitude())), Booking.class);
+    }
+
+    private static ExactLocation location(double latitude, double longitude) {
+        return OBJECT_MAPPER.convertValue(Map.of("latitude", latitude, "longitude", longitude), ExactLocation.class);
+    }
+}
@@ -0,0 +1,141 @@
+package org.mrstm.hdfareservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mrstm.uberentityservice.dto.googlemaps.DistanceDuration;
+import org.mrstm.uberentityservice.models.ExactLocation;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SurgeEngineTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ExactLocation PICKUP = location(28.5562, 77.1000);
+    private static final ExactLocation ELSEWHERE = location(28.7041, 77.1025);
+
+    @Test
+    void demandBelowTheMinimumDoesNotSurge() {
+        SurgeEngine engine = demandEngine(1.0, false);
+        record(engine, 19);
+
+        engine.recompute();
+
+        assertEquals(1.0, engine.getMultiplier(PICKUP));
+    }
+
+    @Test
+    void demandAboveTheBaselineSurgesTheCell() {
+        SurgeEngine engine = demandEngine(1.0, false);
+        // 120 requests against a baseline of 60: 1 + 0.5 * (2 - 1)
+        record(engine, 120);
+
+        engine.recompute();
+
+        assertEquals(1.5, engine.getMultiplier(PICKUP));
+        assertEquals(1.5, engine.surgeFor(PICKUP, route(30, 90)));
+        assertEquals(1.0, engine.getMultiplier(ELSEWHERE));
+    }
+
+    @Test
+    void multiplierMovesTowardsTheTargetBySmoothing() {
+        SurgeEngine engine = demandEngine(0.3, false);
+        record(engine, 120);
+
+        engine.recompute();
+
+        // a third of the way from 1.0 to 1.5, rounded to cents
+        assertEquals(1.15, engine.getMultiplier(PICKUP));
+    }
+
+    @Test
+    void multiplierIsCappedAtTheMaximum() {
+        SurgeEngine engine = demandEngine(1.0, false);
+        record(engine, 5_000);
+
+        engine.recompute();
+
+        assertEquals(2.5, engine.getMultiplier(PICKUP));
+    }
+
+    @Test
+    void servedSupplyOffsetsDemandWhenWeighted() {
+        SurgeEngine weighted = demandEngine(1.0, true);
+        record(weighted, 120);
+        for (int i = 0; i < 39; i++) {
+            weighted.recordCompletion(PICKUP);
+        }
+
+        weighted.recompute();
+
+        // 120 / ((39 + 1) * 3.0) is exactly the baseline ratio
+        assertEquals(1.0, weighted.getMultiplier(PICKUP));
+    }
+
+    @Test
+    void completionsAreIgnoredWithoutSupplyWeighting() {
+        SurgeEngine engine = demandEngine(1.0, false);
+        record(engine, 120);
+        for (int i = 0; i < 39; i++) {
+            engine.recordCompletion(PICKUP);
+        }
+
+        engine.recompute();
+
+        assertEquals(1.5, engine.getMultiplier(PICKUP));
+    }
+
+    @Test
+    void surgeEndsOnceDemandLeavesTheWindow() throws InterruptedException {
+        SurgeEngine engine = new SurgeEngine(new SimpleMeterRegistry(), "demand", 5, Duration.ofMillis(200), 2,
+                3.0, 0.5, 2.5, 20, 1.0, false, 60);
+        record(engine, 120);
+        engine.recompute();
+        assertEquals(1.5, engine.getMultiplier(PICKUP));
+
+        Thread.sleep(300);
+        engine.recompute();
+
+        assertEquals(1.0, engine.getMultiplier(PICKUP));
+    }
+
+    @Test
+    void trafficModePricesEachTripFromItsTrafficRatio() {
+        SurgeEngine engine = new SurgeEngine(new SimpleMeterRegistry(), "traffic", 5, Duration.ofMinutes(5), 30,
+                3.0, 0.5, 2.5, 20, 1.0, false, 60);
+        record(engine, 5_000);
+        engine.recompute();
+
+        assertEquals(1.0, engine.surgeFor(PICKUP, route(30, 27)));
+        assertEquals(1.2, engine.surgeFor(PICKUP, route(30, 36)));
+        assertEquals(1.8, engine.surgeFor(PICKUP, route(30, 54)));
+        assertEquals(2.5, engine.surgeFor(PICKUP, route(30, 90)));
+        assertEquals(1.0, engine.surgeFor(PICKUP, route(0, 90)));
+        assertEquals(1.0, engine.getMultiplier(PICKUP));
+    }
+
+    private static SurgeEngine demandEngine(double smoothing, boolean supplyWeighting) {
+        return new SurgeEngine(new SimpleMeterRegistry(), "demand", 5, Duration.ofMinutes(5), 30,
+                3.0, 0.5, 2.5, 20, smoothing, supplyWeighting, 60);
+    }
+
+    private static void record(SurgeEngine engine, int requests) {
+        for (int i = 0; i < requests; i++) {
+            engine.recordDemand(PICKUP);
+        }
+    }
+
+    private static DistanceDuration route(double duration, double durationInTraffic) {
+        return DistanceDuration.builder()
+                .distance(16.4)
+                .duration(duration)
+                .durationInTraffic(durationInTraffic)
+                .build();
+    }
+
+    private static ExactLocation location(double latitude, double longitude) {
+        return OBJECT_MAPPER.convertValue(Map.of("latitude", latitude, "longitude", longitude), ExactLocation.class);
+    }
+}
@@ -0,0 +1,74 @@
+package org.mrstm.hdfareservice.strategies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PricingProgramTest {
+    private static final PricingStage[] DEFAULT_STAGES = {
+            PricingStage.BASE, PricingStage.PER_KM, PricingStage.PER_MIN, PricingStage.TIME_OF_DAY,
+            PricingStage.SURGE, PricingStage.MIN_FARE, PricingStage.DISCOUNT, PricingStage.ROUNDING};
+
+    @Test
+    void appliesDefaultStagesInOrder() {
+        // base 50, 10/km, 2/min, min fare 100, discount capped at 50%, rounded to 1
+        PricingProgram program = program(DEFAULT_STAGES, 50, 10, 2, 0, 0, 100, 50, 1);
+
+        // (50 + 10*10 + 2*20) * 1.5 = 285, less 10% = 256.5, rounded to 257
+        assertEquals(257, program.evaluate(10, 20, 1.5, 10, 12));
+    }
+
+    @Test
+    void stageOrderChangesTheResult() {
+        PricingStage[] minFareThenSurge = {PricingStage.BASE, PricingStage.MIN_FARE, PricingStage.SURGE};
+        PricingStage[] surgeThenMinFare = {PricingStage.BASE, PricingStage.SURGE, PricingStage.MIN_FARE};
+
+        assertEquals(200, program(minFareThenSurge, 40, 100, 0).evaluate(0, 0, 2, 0, 0));
+        assertEquals(100, program(surgeThenMinFare, 40, 0, 100).evaluate(0, 0, 2, 0, 0));
+    }
+
+    @Test
+    void minFareRaisesShortTrips() {
+        PricingProgram program = program(DEFAULT_STAGES, 20, 10, 1, 0, 0, 80, 50, 1);
+
+        assertEquals(80, program.evaluate(1, 5, 1.0, 0, 12));
+    }
+
+    @Test
+    void discountIsCappedAndNeverNegative() {
+        PricingStage[] stages = {PricingStage.BASE, PricingStage.DISCOUNT};
+
+        assertEquals(50, program(stages, 100, 50).evaluate(0, 0, 1.0, 80, 0));
+        assertEquals(100, program(stages, 100, 50).evaluate(0, 0, 1.0, -20, 0));
+        assertEquals(75, program(stages, 100, 50).evaluate(0, 0, 1.0, 25, 0));
+    }
+
+    @Test
+    void roundsToTheConfiguredStep() {
+        PricingStage[] stages = {PricingStage.BASE, PricingStage.PER_KM, PricingStage.ROUNDING};
+
+        // 10 + 2.5*99 = 257.5
+        assertEquals(260, program(stages, 10, 99, 5).evaluate(2.5, 0, 1.0, 0, 0));
+        assertEquals(258, program(stages, 10, 99, 1).evaluate(2.5, 0, 1.0, 0, 0));
+    }
+
+    @Test
+    void timeOfDayUsesTheMultiplierForTheHour() {
+        PricingStage[] stages = {PricingStage.BASE, PricingStage.TIME_OF_DAY};
+        double[] hourMultipliers = new double[24];
+        Arrays.fill(hourMultipliers, 1.0);
+        hourMultipliers[23] = 1.25;
+        PricingProgram program = new PricingProgram(1, stages, new double[]{100, 0}, hourMultipliers);
+
+        assertEquals(125, program.evaluate(0, 0, 1.0, 0, 23));
+        assertEquals(100, program.evaluate(0, 0, 1.0, 0, 12));
+    }
+
+    private static PricingProgram program(PricingStage[] stages, double... operands) {
+        double[] hourMultipliers = new double[24];
+        Arrays.fill(hourMultipliers, 1.0);
+        return new PricingProgram(1, stages, operands, hourMultipliers);
+    }
+}